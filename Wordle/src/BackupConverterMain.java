@@ -0,0 +1,53 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Classe che converte il file di backup tra il formato JSON e il formato binario, in entrambe le direzioni.
+ * Il formato del file di partenza viene riconosciuto automaticamente.
+ * Utilizzo: java BackupConverterMain json|compact|binary fileDiPartenza fileDiDestinazione fileDelDizionario
+ * 
+ * @author Lorenzo Deriu
+ */
+public class BackupConverterMain {
+	public static void main(String[] args) {
+		if (args.length != 4) {
+			System.out.println(ServerOutputMessage.ConverterUsageMessage);
+			System.exit(1);
+		}
+
+		String format = args[0];
+		File inputFile = new File(args[1]);
+		File outputFile = new File(args[2]);
+		Vocabulary vocabulary = new Vocabulary(args[3]);
+		WordTable.setVocabulary(vocabulary);
+
+		try {
+			WordleData data = BinaryBackup.isBinaryBackup(inputFile) ? BinaryBackup.load(inputFile, vocabulary) : JsonBackup.load(inputFile);
+
+			if (data == null) { // il file di partenza è vuoto
+				data = new WordleData();
+			}
+
+			switch (format) {
+				case WordleData.BACKUP_FORMAT_JSON:
+				case WordleData.BACKUP_FORMAT_COMPACT:
+				JsonBackup.save(data, outputFile, format.equals(WordleData.BACKUP_FORMAT_JSON));
+				break;
+
+				case WordleData.BACKUP_FORMAT_BINARY:
+				BinaryBackup.save(data, outputFile, vocabulary);
+				break;
+
+				default:
+				System.out.println(ServerOutputMessage.BackupFormatErrorMessage);
+				System.exit(1);
+			}
+		} catch (IllegalStateException | NumberFormatException e) {
+			System.out.println(ServerOutputMessage.jsonErrorMessage);
+			System.exit(1);
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Classe che effettua i backup dei dati del gioco in un thread dedicato, in modo che il Selector e il timer
+ * della parola segreta non restino bloccati durante la scrittura del file.
+ * Le richieste di backup arrivate mentre un backup è già in attesa vengono unite in un'unica scrittura
+ *
+ * @author Lorenzo Deriu
+ */
+public class BackupWorker {
+	private final WordleData data;
+	private final String backupFileName;
+
+	private final ExecutorService executor;
+	private final AtomicBoolean backupRequested;
+
+	/**
+	 * Costruttore della classe
+	 * @param data dati del gioco
+	 * @param backupFileName nome del file di backup
+	 */
+	public BackupWorker(WordleData data, String backupFileName) {
+		this.data = data;
+		this.backupFileName = backupFileName;
+
+		this.executor = Executors.newSingleThreadExecutor();
+		this.backupRequested = new AtomicBoolean(false);
+	}
+
+	/**
+	 * Metodo che richiede un nuovo backup e ritorna subito. Se un backup è già in attesa di essere eseguito
+	 * la richiesta viene unita a quella, se invece un backup è in corso ne verrà eseguito un altro al suo termine
+	 */
+	public void requestBackup() {
+		if (backupRequested.compareAndSet(false, true)) {
+			executor.execute(() -> {
+				backupRequested.set(false);
+				data.doBackup(backupFileName);
+			});
+		}
+	}
+
+	/**
+	 * Metodo che attende la fine dei backup richiesti e termina il thread del worker
+	 */
+	public void close() {
+		executor.shutdown();
+
+		try { executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS); }
+		catch (InterruptedException e) { System.out.println(ServerOutputMessage.InterrputedExceptionMessage); }
+	}
+}
@@ -0,0 +1,381 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Classe che legge e scrive il backup dei dati del gioco in formato binario.
+ * Il file inizia con un'intestazione (MAGIC, impronta del dizionario, generazione del log, parola segreta e momento del prossimo cambio),
+ * seguita dagli utenti, ognuno preceduto dalla sua lunghezza, e dalle notifiche inviate.
+ * Gli interi sono codificati come varint (7 bit per byte, il bit più alto indica che segue un altro byte),
+ * le parole presenti nel dizionario vengono salvate come posizione nel dizionario.
+ * Il file viene letto tramite un MappedByteBuffer, senza copiarlo in memoria
+ *
+ * @author Lorenzo Deriu
+ */
+public class BinaryBackup {
+	public static final String FILE_EXTENSION = ".bin";
+
+	private static final int MAGIC = 0x57444C32; // "WDL2", le partite contengono il momento di fine partita
+	private static final int MAGIC_V1 = 0x57444C31; // "WDL1", le partite non contengono il momento di fine partita
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final byte FALSE = 0;
+	private static final byte TRUE = 1;
+	private static final byte NULL = 2;
+
+	private static final int NULL_WORD = 0; // parola null
+	private static final int INLINE_WORD = 1; // parola non presente nel dizionario, salvata come stringa
+	private static final int FIRST_WORD_INDEX = 2; // le posizioni nel dizionario partono da questo valore
+
+	private final Vocabulary vocabulary;
+	private final String[] wordCache; // parole già lette, condivise da tutte le partite che le riguardano
+
+	private ByteBuffer buffer;
+	private FileChannel channel;
+	private Boolean timestamps; // false se il backup letto è nel formato WDL1
+
+	/**
+	 * Costruttore della classe
+	 * @param buffer buffer da cui leggere o in cui scrivere
+	 * @param channel canale su cui scrivere il contenuto del buffer quando è pieno, null in lettura
+	 * @param vocabulary dizionario utilizzato per codificare le parole
+	 */
+	private BinaryBackup(ByteBuffer buffer, FileChannel channel, Vocabulary vocabulary) {
+		this.buffer = buffer;
+		this.channel = channel;
+		this.vocabulary = vocabulary;
+		this.wordCache = new String[vocabulary.size()];
+		this.timestamps = true;
+	}
+
+	/**
+	 * Metodo che restituisce il file del backup binario corrispondente al file di backup JSON
+	 * @param backupFileName nome del file di backup JSON
+	 * @return file del backup binario
+	 */
+	public static File fileFor(String backupFileName) {
+		int extension = backupFileName.lastIndexOf('.');
+
+		return new File((extension > 0 ? backupFileName.substring(0, extension) : backupFileName) + FILE_EXTENSION);
+	}
+
+	/**
+	 * Metodo che controlla se il file contiene un backup binario
+	 * @param file file da controllare
+	 * @return true se il file inizia con MAGIC, false altrimenti
+	 * @throws IOException
+	 */
+	public static Boolean isBinaryBackup(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(4);
+
+		while (header.hasRemaining() && channel.read(header) != -1);
+		channel.close();
+
+		return !header.hasRemaining() && (header.getInt(0) == MAGIC || header.getInt(0) == MAGIC_V1);
+	}
+
+	/**
+	 * Metodo che carica i dati del gioco dal backup binario
+	 * @param backupFile file del backup binario
+	 * @param vocabulary dizionario con cui è stato scritto il backup
+	 * @return dati del gioco, null se il file è vuoto
+	 * @throws IOException se il file non è un backup binario o è stato scritto con un dizionario diverso
+	 */
+	public static WordleData load(File backupFile, Vocabulary vocabulary) throws IOException {
+		FileChannel channel = FileChannel.open(backupFile.toPath(), StandardOpenOption.READ);
+
+		try {
+			if (channel.size() == 0) return null;
+
+			BinaryBackup input = new BinaryBackup(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), null, vocabulary);
+
+			int magic = input.buffer.remaining() < 12 ? 0 : input.buffer.getInt();
+
+			if (magic != MAGIC && magic != MAGIC_V1) {
+				throw new IOException(ServerOutputMessage.BinaryBackupErrorMessage);
+			}
+
+			input.timestamps = magic == MAGIC;
+
+			if (input.buffer.getLong() != vocabulary.getChecksum()) {
+				throw new IOException(ServerOutputMessage.BinaryBackupVocabularyErrorMessage);
+			}
+
+			return WordleData.readBinary(input);
+		} catch (RuntimeException e) { // file troncato o danneggiato
+			throw new IOException(ServerOutputMessage.BinaryBackupErrorMessage, e);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Metodo che scrive i dati del gioco nel file indicato in formato binario
+	 * @param data dati del gioco
+	 * @param file file da scrivere
+	 * @param vocabulary dizionario utilizzato per codificare le parole
+	 * @throws IOException
+	 */
+	public static void save(WordleData data, File file, Vocabulary vocabulary) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+		try {
+			BinaryBackup output = new BinaryBackup(ByteBuffer.allocateDirect(BUFFER_SIZE), channel, vocabulary);
+
+			output.buffer.putInt(MAGIC);
+			output.buffer.putLong(vocabulary.getChecksum());
+
+			data.writeBinary(output);
+
+			output.flush();
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Metodo che scrive un long di dimensione fissa
+	 * @param value valore da scrivere
+	 * @throws IOException
+	 */
+	public void putLong(long value) throws IOException {
+		ensureRemaining(8);
+		buffer.putLong(value);
+	}
+
+	/**
+	 * Metodo che scrive un intero non negativo come varint
+	 * @param value valore da scrivere
+	 * @throws IOException
+	 */
+	public void putVarint(int value) throws IOException {
+		ensureRemaining(5);
+
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Metodo che scrive un Boolean che può essere null
+	 * @param value valore da scrivere
+	 * @throws IOException
+	 */
+	public void putBoolean(Boolean value) throws IOException {
+		ensureRemaining(1);
+		buffer.put(value == null ? NULL : (value ? TRUE : FALSE));
+	}
+
+	/**
+	 * Metodo che scrive una stringa in UTF-8 preceduta dalla sua lunghezza, null viene scritta come stringa vuota
+	 * @param value stringa da scrivere
+	 * @throws IOException
+	 */
+	public void putString(String value) throws IOException {
+		byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+
+		putVarint(bytes.length);
+
+		for (int written = 0; written < bytes.length; ) {
+			ensureRemaining(1);
+
+			int chunk = Math.min(buffer.remaining(), bytes.length - written);
+			buffer.put(bytes, written, chunk);
+			written += chunk;
+		}
+	}
+
+	/**
+	 * Metodo che scrive una parola come posizione nel dizionario, oppure come stringa se non è presente
+	 * @param word parola da scrivere
+	 * @throws IOException
+	 */
+	public void putWord(String word) throws IOException {
+		if (word == null) {
+			putVarint(NULL_WORD);
+			return;
+		}
+
+		int position = vocabulary.indexOf(word);
+
+		if (position == -1) {
+			putVarint(INLINE_WORD);
+			putString(word);
+		} else {
+			putVarint(position + FIRST_WORD_INDEX);
+		}
+	}
+
+	/**
+	 * Metodo che scrive il momento di fine di una partita, in secondi come varint senza segno
+	 * @param timestamp momento in millisecondi, 0 se sconosciuto
+	 * @throws IOException
+	 */
+	public void putTimestamp(long timestamp) throws IOException {
+		putVarint((int) Math.max(0, Math.min(timestamp / 1000, 0xFFFFFFFFL)));
+	}
+
+	/**
+	 * Metodo che inizia un blocco preceduto dalla sua lunghezza, riservando 4 byte per la lunghezza
+	 * @return posizione nel file della lunghezza, da passare a endBlock()
+	 * @throws IOException
+	 */
+	public long beginBlock() throws IOException {
+		ensureRemaining(4);
+
+		long lengthPosition = channel.position() + buffer.position();
+		buffer.putInt(0);
+
+		return lengthPosition;
+	}
+
+	/**
+	 * Metodo che chiude il blocco iniziato con beginBlock() scrivendone la lunghezza.
+	 * Se nel frattempo la lunghezza è già stata scritta sul canale viene aggiornata direttamente nel file
+	 * @param lengthPosition posizione nel file della lunghezza, restituita da beginBlock()
+	 * @throws IOException
+	 */
+	public void endBlock(long lengthPosition) throws IOException {
+		long bufferPosition = channel.position(); // posizione nel file del primo byte del buffer
+		int blockLength = (int) (bufferPosition + buffer.position() - lengthPosition - 4);
+
+		if (lengthPosition >= bufferPosition) {
+			buffer.putInt((int) (lengthPosition - bufferPosition), blockLength);
+		} else {
+			channel.write(ByteBuffer.allocate(4).putInt(0, blockLength), lengthPosition);
+		}
+	}
+
+	/**
+	 * Metodo che restituisce il numero di byte ancora da leggere
+	 * @return byte ancora da leggere
+	 */
+	public int remaining() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * Metodo che legge un long di dimensione fissa
+	 * @return valore letto
+	 */
+	public long getLong() {
+		return buffer.getLong();
+	}
+
+	/**
+	 * Metodo che legge un intero codificato come varint
+	 * @return valore letto
+	 */
+	public int getVarint() {
+		int value = 0;
+
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+
+			if (b >= 0) return value;
+		}
+
+		throw new IllegalStateException("varint non valido");
+	}
+
+	/**
+	 * Metodo che legge un Boolean che può essere null
+	 * @return valore letto
+	 */
+	public Boolean getBoolean() {
+		byte value = buffer.get();
+
+		return value == NULL ? null : value == TRUE;
+	}
+
+	/**
+	 * Metodo che legge una stringa in UTF-8 preceduta dalla sua lunghezza
+	 * @return stringa letta
+	 */
+	public String getString() {
+		byte[] bytes = new byte[getVarint()];
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Metodo che legge una parola scritta con putWord(), le parole del dizionario vengono create una sola volta
+	 * @return parola letta
+	 */
+	public String getWord() {
+		int code = getVarint();
+
+		if (code == NULL_WORD) return null;
+		if (code == INLINE_WORD) return getString();
+
+		int position = code - FIRST_WORD_INDEX;
+
+		if (wordCache[position] == null) {
+			wordCache[position] = vocabulary.wordAt(position);
+		}
+
+		return wordCache[position];
+	}
+
+	/**
+	 * Metodo che legge il momento di fine di una partita scritto con putTimestamp()
+	 * @return momento in millisecondi, 0 se sconosciuto o se il backup è nel formato WDL1
+	 */
+	public long getTimestamp() {
+		return timestamps ? Integer.toUnsignedLong(getVarint()) * 1000 : 0;
+	}
+
+	/**
+	 * Metodo che legge la lunghezza di un blocco scritto con beginBlock() ed endBlock()
+	 * @return posizione della fine del blocco, da passare a skipBlock()
+	 */
+	public int readBlockLength() {
+		int blockLength = buffer.getInt();
+
+		if (blockLength < 0 || blockLength > buffer.remaining()) {
+			throw new IllegalStateException("lunghezza del blocco non valida");
+		}
+
+		return buffer.position() + blockLength;
+	}
+
+	/**
+	 * Metodo che si posiziona alla fine di un blocco, ignorando gli eventuali dati non letti
+	 * @param blockEnd posizione della fine del blocco, restituita da readBlockLength()
+	 */
+	public void skipBlock(int blockEnd) {
+		buffer.position(blockEnd);
+	}
+
+	/**
+	 * Metodo che si assicura che nel buffer ci sia spazio per altri byteCount byte, scrivendo sul canale il contenuto del buffer
+	 * @param byteCount numero di byte da scrivere
+	 * @throws IOException
+	 */
+	private void ensureRemaining(int byteCount) throws IOException {
+		if (buffer.remaining() < byteCount) {
+			flush();
+		}
+	}
+
+	/**
+	 * Metodo che scrive sul canale il contenuto del buffer
+	 * @throws IOException
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,55 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Classe che rappresenta un pool di ByteBuffer diretti della stessa dimensione.
+ * I buffer diretti sono costosi da allocare, quindi vengono riutilizzati tra connessioni diverse
+ *
+ * @author Lorenzo Deriu
+ */
+public class BufferPool {
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers;
+	private final int bufferSize;
+
+	/**
+	 * Costruttore della classe
+	 * @param bufferSize dimensione in byte dei buffer del pool
+	 */
+	public BufferPool(int bufferSize) {
+		this.buffers = new ConcurrentLinkedQueue<>();
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Metodo che restituisce un buffer libero del pool, se non ce ne sono ne viene allocato uno nuovo
+	 * @return buffer diretto pronto per la scrittura
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Metodo che restituisce un buffer al pool, i buffer che non provengono dal pool vengono ignorati
+	 * @param buffer buffer da restituire
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer != null && buffer.isDirect() && buffer.capacity() == bufferSize) {
+			buffers.offer(buffer);
+		}
+	}
+
+	/**
+	 * Metodo che restituisce la dimensione dei buffer del pool
+	 * @return dimensione in byte dei buffer
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+}
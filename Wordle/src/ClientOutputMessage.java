@@ -5,11 +5,12 @@
  */
 public class ClientOutputMessage {
 	public static final String ClientConfigFlieNotFound = "Il file di configurazione del client non esiste";
+	public static final String InterruptedExceptionMessage = "Il thread è stato interrotto";
 
 	public static final String RegistrationConfirmed = "Registrazione confermata, effettua il login per giocare.\n";
 	public static final String RegistrationErrorMessage = "La registrazione non è andata a buon fine riprova con credenziali diverse.\n";
 	public static final String StartingMessage = "----Wordle----\n[1] Registrati\n[2] Effettua il log in\n[3] Esci\n=> ";
-	public static final String GamePlayInstruction = "[1] Prova a indovinare la parola\n[2] Mostra ciò che gli altri hanno condiviso\n[3] mostra le mie statistiche\n[4] Esegui il logout\n=> ";
+	public static final String GamePlayInstruction = "[1] Prova a indovinare la parola\n[2] Mostra ciò che gli altri hanno condiviso\n[3] mostra le mie statistiche\n[4] Mostra la classifica\n[5] Mostra i risultati di tutti i giocatori su una parola\n[6] Esegui il logout\n=> ";
 	
 	public static final String Welcome = "\nBentornato";
 	public static final String CredentialError = "Credenziali errate";
@@ -18,7 +19,8 @@ public class ClientOutputMessage {
 
 	public static final String RequestUsername = "Username (o STOP per annullare): ";
 	public static final String RequestPassword = "Password: ";
-	public static final String RequestWord = "Inserisci la parola oppure inserisci 'exit' per uscire. Ti rimangono %d tentaivi: ";
+	public static final String RequestWord = "Inserisci la parola (o più parole separate da spazi) oppure inserisci 'exit' per uscire. Ti rimangono %d tentaivi: ";
+	public static final String TooManyWords = "Puoi inserire al massimo %d parole alla volta, riprova\n";
 	public static final String VocabularyError = "La parola non è presente nel vocabolario, riprova";
 
 	public static final String Result = "-------Result-------\n%s\n%s\n-------Result-------\n";
@@ -29,8 +31,20 @@ public class ClientOutputMessage {
 	public static final String RequestWaitNextWord = "Vuoi aspettare la prossima parola? [Y|N] => ";
 	public static final String WaitingMessage = "Avrai la possibilità di giocare la prossima parola non appena sarà disponibile. Mancano %d minuti\n";
 
+	public static final String RequestHistory = "Vuoi vedere lo storico delle partite? [Y|N] => ";
+	public static final String RequestNextHistoryPage = "Partite %d-%d di %d. Vuoi vedere le partite successive? [Y|N] => ";
+	public static final String NoNewNotification = "Nessuna nuova condivisione\n";
 	public static final String StatisticRecord = "parola segreta: \"%s\" | Numero di tentativi: %d => %s\n";
 	public static final String WinAndLoseCounts = "Vittorie: %d - Sconfitte: %d\n";
+	public static final String StreakCounts = "Partite giocate: %d - Serie di vittorie attuale: %d - Serie di vittorie massima: %d\n";
+	public static final String LeaderboardTitle = "-------Classifica------- (%d giocatori)\n";
+	public static final String LeaderboardEntry = "%d. %s - Vittorie: %d - Media tentativi: %.2f\n";
+	public static final String LeaderboardUserRank = "La tua posizione: %d\n";
+	public static final String LeaderboardNotRanked = "Non sei ancora in classifica, concludi una partita per entrarci";
+	public static final String RequestResultsWord = "Inserisci una parola passata, oppure premi invio per la parola attuale: ";
+	public static final String WordResultsTitle = "-------Risultati di tutti i giocatori-------";
+	public static final String WordResultsFailures = "Partite concluse: %d - Sconfitte: %d\n";
+	public static final String WordResultsNotFound = "Nessuna partita conclusa su questa parola";
 	public static final String ConfigurationFileNotFoundError = "parola segreta: \"%s\" | Numero di tentativi: %d => %s\n";
 
 	public static final String InvalidPort = "Il numero di porta deve essere compreso tra 1024 e 65535";
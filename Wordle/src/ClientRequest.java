@@ -9,4 +9,10 @@ public class ClientRequest {
 	public static final int LOGOUT = 24;
 	public static final int SEND_STATISTICS = 25;
 	public static final int WAITING_NEXT_WORD = 26;
+	public static final int PLAY_BATCH = 27;
+	public static final int SEND_STATISTICS_SUMMARY = 28;
+	public static final int LEADERBOARD = 29;
+	public static final int WORD_RESULTS = 30;
+	public static final int SUBSCRIBE_SHARES = 31;
+	public static final int POLL_SHARES = 32;
 }
\ No newline at end of file
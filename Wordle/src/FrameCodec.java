@@ -0,0 +1,226 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Classe che si occupa della suddivisione in frame dei messaggi scambiati tra client e server.
+ * Ogni messaggio è preceduto dalla sua lunghezza in byte (int), seguita dal codice ClientRequest o ServerResponse e dagli eventuali dati.
+ * Un'istanza accumula i byte letti da una connessione, gestendo frame spezzati su più letture
+ * e più frame ricevuti con una sola lettura; i metodi statici costruiscono i frame da inviare
+ *
+ * @author Lorenzo Deriu
+ */
+public class FrameCodec {
+	public static final int MAX_FRAME_LENGTH = 1 << 20;
+	public static final int MAX_AUTH_FRAME_LENGTH = 1024; // limite per le connessioni non ancora autenticate
+	public static final int BUFFER_SIZE = 4096;
+
+	private static final BufferPool pool = new BufferPool(BUFFER_SIZE);
+
+	private ByteBuffer input;
+	private int start; // inizio del primo frame non ancora consumato
+	private int end; // fine dei dati ricevuti
+	private int maxFrameLength; // lunghezza massima accettata per un frame
+
+	/**
+	 * Costruttore della classe
+	 */
+	public FrameCodec() {
+		this(MAX_FRAME_LENGTH);
+	}
+
+	/**
+	 * Costruttore della classe
+	 * @param maxFrameLength lunghezza massima accettata per un frame
+	 */
+	public FrameCodec(int maxFrameLength) {
+		this.input = pool.acquire();
+		this.start = 0;
+		this.end = 0;
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	/**
+	 * Metodo che modifica la lunghezza massima accettata per i frame successivi, ad esempio dopo il login
+	 * @param maxFrameLength lunghezza massima accettata per un frame
+	 */
+	public void setMaxFrameLength(int maxFrameLength) {
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	/**
+	 * Metodo che legge dal canale i byte disponibili e li accoda a quelli già ricevuti
+	 * @param channel canale da cui leggere
+	 * @return numero di byte letti, -1 se il canale è stato chiuso
+	 * @throws IOException
+	 */
+	public int read(ReadableByteChannel channel) throws IOException {
+		makeRoom();
+
+		input.limit(input.capacity());
+		input.position(end);
+
+		int bytesRead = channel.read(input);
+		end = input.position();
+
+		return bytesRead;
+	}
+
+	/**
+	 * Metodo che restituisce il prossimo frame completo tra quelli ricevuti.
+	 * Il buffer restituito è quello interno, con position e limit che delimitano il contenuto del frame:
+	 * deve essere letto prima di chiamare di nuovo nextFrame() o read()
+	 * @return buffer contenente il frame, null se non è ancora stato ricevuto un frame completo
+	 * @throws ProtocolException se la lunghezza del frame non è valida
+	 */
+	public ByteBuffer nextFrame() throws ProtocolException {
+		if (end - start < 4) {
+			return null;
+		}
+
+		input.limit(end);
+		int frameLength = input.getInt(start);
+
+		if (frameLength < 0 || frameLength > maxFrameLength) {
+			throw new ProtocolException("Lunghezza del frame non valida: " + frameLength);
+		}
+
+		if (end - start - 4 < frameLength) {
+			return null;
+		}
+
+		input.limit(start + 4 + frameLength);
+		input.position(start + 4);
+		start += 4 + frameLength;
+
+		return input;
+	}
+
+	/**
+	 * Metodo che restituisce il prossimo frame bloccandosi sulla lettura finché non è stato ricevuto completamente,
+	 * da utilizzare solo con canali bloccanti
+	 * @param channel canale da cui leggere
+	 * @return buffer contenente il frame
+	 * @throws IOException se il canale è stato chiuso prima di ricevere il frame completo
+	 */
+	public ByteBuffer readFrame(ReadableByteChannel channel) throws IOException {
+		ByteBuffer frame;
+
+		while ((frame = nextFrame()) == null) {
+			if (read(channel) == -1) {
+				throw new EOFException();
+			}
+		}
+
+		return frame;
+	}
+
+	/**
+	 * Metodo che restituisce true se sono stati ricevuti byte non ancora consumati
+	 * @return true se ci sono byte non ancora consumati, false altrimenti
+	 */
+	public Boolean hasPendingBytes() {
+		return end > start;
+	}
+
+	/**
+	 * Metodo che restituisce il buffer interno al pool, l'istanza non può più essere utilizzata
+	 */
+	public void release() {
+		pool.release(input);
+		input = null;
+	}
+
+	/**
+	 * Metodo che libera spazio nel buffer interno prima di una lettura: i byte non consumati
+	 * vengono spostati all'inizio del buffer, se il frame in arrivo non ci sta il buffer viene ingrandito
+	 */
+	private void makeRoom() {
+		if (start == end) {
+			start = end = 0;
+		}
+
+		int required = end - start + 4;
+		input.limit(end);
+
+		if (end - start >= 4) {
+			int frameLength = input.getInt(start);
+
+			if (frameLength >= 0 && frameLength <= maxFrameLength) {
+				required = Math.max(required, frameLength + 4);
+			}
+		}
+
+		if (required > input.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(required, input.capacity() * 2));
+
+			input.limit(end);
+			input.position(start);
+			larger.put(input);
+
+			pool.release(input);
+			input = larger;
+		} else if (end == input.capacity() || start + required > input.capacity()) {
+			input.limit(end);
+			input.position(start);
+			input.compact();
+		} else {
+			return;
+		}
+
+		end -= start;
+		start = 0;
+	}
+
+	/**
+	 * Metodo che restituisce un buffer diretto del pool, da utilizzare per costruire i frame in uscita
+	 * @return buffer pronto per la scrittura
+	 */
+	public static ByteBuffer acquireBuffer() {
+		return pool.acquire();
+	}
+
+	/**
+	 * Metodo che restituisce al pool un buffer ottenuto con acquireBuffer()
+	 * @param buffer buffer da restituire
+	 */
+	public static void releaseBuffer(ByteBuffer buffer) {
+		pool.release(buffer);
+	}
+
+	/**
+	 * Metodo che inizia un nuovo frame nella posizione corrente del buffer, riservando lo spazio per la lunghezza
+	 * @param buffer buffer in cui scrivere il frame
+	 * @return posizione di inizio del frame, da passare a endFrame()
+	 */
+	public static int beginFrame(ByteBuffer buffer) {
+		int frameStart = buffer.position();
+		buffer.putInt(0);
+
+		return frameStart;
+	}
+
+	/**
+	 * Metodo che chiude il frame iniziato con beginFrame(), scrivendone la lunghezza
+	 * @param buffer buffer in cui è stato scritto il frame
+	 * @param frameStart posizione di inizio del frame
+	 */
+	public static void endFrame(ByteBuffer buffer, int frameStart) {
+		buffer.putInt(frameStart, buffer.position() - frameStart - 4);
+	}
+
+	/**
+	 * Metodo che scrive tutto il contenuto del buffer sul canale, da utilizzare solo con canali bloccanti
+	 * @param buffer buffer pronto per la lettura
+	 * @param channel canale su cui scrivere
+	 * @throws IOException
+	 */
+	public static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -1,20 +1,32 @@
-import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 /**
- * Classe che rappresenta lo storico delle partite giocate
- * 
+ * Classe che rappresenta una pagina dello storico delle partite giocate, inviata dal server in risposta a SEND_STATISTICS.
+ * La pagina viene codificata come numero totale di partite (int), posizione della prima partita (int),
+ * numero di partite nella pagina (int) e, per ogni partita, numero di tentativi (byte),
+ * esito (byte: 0 non indovinata, 1 indovinata, 2 sconosciuto) e parola (short con la lunghezza in byte, -1 se assente, seguito dai byte UTF-8)
+ *
  * @author Lorenzo Deriu
  */
-public class GameHistory implements Serializable {
+public class GameHistory {
+	public static final int PAGE_SIZE = 256; // numero massimo di partite in una pagina
+
 	private ArrayList<GameRecord> record;
+	private int offset;
+	private int totalCount;
 
 	/**
 	 * Costruttore della classe
 	 * @param record lista delle partite giocate
+	 * @param offset posizione della prima partita della pagina nello storico
+	 * @param totalCount numero totale di partite giocate
 	 */
-	public GameHistory(ArrayList<GameRecord> record) {
+	public GameHistory(ArrayList<GameRecord> record, int offset, int totalCount) {
 		this.record = record;
+		this.offset = offset;
+		this.totalCount = totalCount;
 	}
 
 	/**
@@ -24,4 +36,136 @@ public class GameHistory implements Serializable {
 	public ArrayList<GameRecord> getRecords() {
 		return record;
 	}
+
+	/**
+	 * Metodo che restituisce la posizione della prima partita della pagina nello storico
+	 * @return posizione della prima partita
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Metodo che restituisce il numero totale di partite giocate
+	 * @return numero totale di partite
+	 */
+	public int getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Metodo che restituisce se ci sono altre partite dopo quelle della pagina
+	 * @return true se ci sono altre partite, false altrimenti
+	 */
+	public Boolean hasNextPage() {
+		return offset + record.size() < totalCount;
+	}
+
+	/**
+	 * Metodo che calcola il numero massimo di byte occupati da una pagina, senza codificare le parole
+	 * @param history partite giocate
+	 * @param offset posizione della prima partita
+	 * @param count numero di partite
+	 * @return limite superiore della dimensione della pagina in byte
+	 */
+	public static int maxPageSize(PackedGameHistory history, int offset, int count) {
+		int size = 12;
+
+		for (int i = offset; i < offset + count; i++) {
+			String word = history.getWordToGuess(i);
+			size += 4 + (word == null ? 0 : 3 * word.length());
+		}
+
+		return size;
+	}
+
+	/**
+	 * Metodo che scrive una pagina dello storico nel buffer, che deve avere almeno maxPageSize() byte liberi
+	 * @param buffer buffer su cui scrivere
+	 * @param history partite giocate
+	 * @param offset posizione della prima partita
+	 * @param count numero di partite
+	 */
+	public static void writePage(ByteBuffer buffer, PackedGameHistory history, int offset, int count) {
+		buffer.putInt(history.size());
+		buffer.putInt(offset);
+		buffer.putInt(count);
+
+		for (int i = offset; i < offset + count; i++) {
+			Boolean guessed = history.guessed(i);
+
+			buffer.put((byte) history.getAttemptsCount(i));
+			buffer.put((byte) (guessed == null ? 2 : (guessed ? 1 : 0)));
+			putWord(buffer, history.getWordToGuess(i));
+		}
+	}
+
+	/**
+	 * Metodo che legge una pagina dello storico scritta da writePage()
+	 * @param buffer buffer da cui leggere
+	 * @return pagina dello storico
+	 */
+	public static GameHistory readPage(ByteBuffer buffer) {
+		int totalCount = buffer.getInt();
+		int offset = buffer.getInt();
+		int count = buffer.getInt();
+
+		ArrayList<GameRecord> records = new ArrayList<>(Math.min(count, PAGE_SIZE));
+
+		for (int i = 0; i < count; i++) {
+			int attemptsCount = buffer.get();
+			byte outcome = buffer.get();
+			String word = getWord(buffer);
+
+			records.add(new GameRecord(attemptsCount, outcome == 2 ? null : outcome == 1, word));
+		}
+
+		return new GameHistory(records, offset, totalCount);
+	}
+
+	/**
+	 * Metodo che scrive una parola preceduta dalla sua lunghezza in byte.
+	 * Le parole ASCII, come quelle del dizionario, vengono copiate senza creare un array di byte
+	 * @param buffer buffer su cui scrivere
+	 * @param word parola da scrivere, può essere null
+	 */
+	private static void putWord(ByteBuffer buffer, String word) {
+		if (word == null) {
+			buffer.putShort((short) -1);
+			return;
+		}
+
+		int lengthPosition = buffer.position();
+		buffer.putShort((short) 0);
+
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+
+			if (c >= 0x80) {
+				buffer.position(lengthPosition + 2);
+				buffer.put(word.getBytes(StandardCharsets.UTF_8));
+				break;
+			}
+
+			buffer.put((byte) c);
+		}
+
+		buffer.putShort(lengthPosition, (short) (buffer.position() - lengthPosition - 2));
+	}
+
+	/**
+	 * Metodo che legge una parola scritta da putWord()
+	 * @param buffer buffer da cui leggere
+	 * @return parola letta, null se assente
+	 */
+	private static String getWord(ByteBuffer buffer) {
+		int length = buffer.getShort();
+
+		if (length < 0) return null;
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
 }
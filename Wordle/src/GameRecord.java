@@ -1,14 +1,18 @@
-import java.io.Serializable;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Classe che rappresenta le informazioni del gioco: numero di tentativi, parola da indovinare, se è stata indovinata
- * Implementa Serializable per poter essere serializzato e inviato tramite socket
+ * e momento di fine partita
  * @author Lorenzo Deriu
  */
-public class GameRecord implements Serializable {
+public class GameRecord {
 	private int attemptsCount;
 	private Boolean guessed;
 	private String wordToGuess;
+	private long timestamp;
 
 	/**
 	 * Costruttore della classe
@@ -17,9 +21,21 @@ public class GameRecord implements Serializable {
 	 * @param wordToGuess parola da indovinare
 	 */
 	public GameRecord(int attemptsCount, Boolean guessed, String wordToGuess) {
+		this(attemptsCount, guessed, wordToGuess, 0);
+	}
+
+	/**
+	 * Costruttore della classe
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param wordToGuess parola da indovinare
+	 * @param timestamp momento di fine partita in millisecondi, 0 se sconosciuto
+	 */
+	public GameRecord(int attemptsCount, Boolean guessed, String wordToGuess, long timestamp) {
 		this.attemptsCount = attemptsCount;
 		this.guessed = guessed;
 		this.wordToGuess = wordToGuess;
+		this.timestamp = timestamp;
 	}
 
 	/**
@@ -45,4 +61,75 @@ public class GameRecord implements Serializable {
 	public String getWordToGuess() {
 		return wordToGuess;
 	}
+
+	/**
+	 * Metodo che restituisce il momento di fine partita
+	 * @return momento di fine partita in millisecondi, 0 se sconosciuto
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Metodo che scrive una partita come oggetto JSON, con gli stessi campi e lo stesso ordine utilizzati da Gson.
+	 * Il momento di fine partita viene scritto nel campo opzionale "timestamp" solo se è noto:
+	 * Gson e le versioni precedenti del backup ignorano il campo
+	 * @param writer JsonWriter su cui scrivere
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param wordToGuess parola da indovinare
+	 * @param timestamp momento di fine partita in millisecondi, 0 se sconosciuto
+	 * @throws IOException
+	 */
+	public static void writeJson(JsonWriter writer, int attemptsCount, Boolean guessed, String wordToGuess, long timestamp) throws IOException {
+		writer.beginObject();
+		writer.name("attemptsCount").value(attemptsCount);
+		if (guessed != null) writer.name("guessed").value(guessed);
+		if (wordToGuess != null) writer.name("wordToGuess").value(wordToGuess);
+		if (timestamp != 0) writer.name("timestamp").value(timestamp);
+		writer.endObject();
+	}
+
+	/**
+	 * Metodo che legge una partita da un oggetto JSON, i campi sconosciuti vengono ignorati
+	 * @param reader JsonReader da cui leggere
+	 * @return partita letta
+	 * @throws IOException
+	 */
+	public static GameRecord readJson(JsonReader reader) throws IOException {
+		int attemptsCount = 0;
+		Boolean guessed = null;
+		String wordToGuess = null;
+		long timestamp = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "attemptsCount": attemptsCount = reader.nextInt(); break;
+				case "guessed": guessed = JsonBackup.nextBoolean(reader); break;
+				case "wordToGuess": wordToGuess = JsonBackup.nextString(reader); break;
+				case "timestamp": timestamp = reader.nextLong(); break;
+				default: reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new GameRecord(attemptsCount, guessed, wordToGuess, timestamp);
+	}
+
+	/**
+	 * Metodo che scrive una partita nel backup binario
+	 * @param output backup binario su cui scrivere
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param wordToGuess parola da indovinare
+	 * @param timestamp momento di fine partita in millisecondi, 0 se sconosciuto
+	 * @throws IOException
+	 */
+	public static void writeBinary(BinaryBackup output, int attemptsCount, Boolean guessed, String wordToGuess, long timestamp) throws IOException {
+		output.putVarint(attemptsCount);
+		output.putBoolean(guessed);
+		output.putWord(wordToGuess);
+		output.putTimestamp(timestamp);
+	}
 }
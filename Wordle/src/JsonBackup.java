@@ -0,0 +1,113 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Classe che legge e scrive il file di backup in formato JSON un elemento alla volta, tramite JsonReader e JsonWriter,
+ * senza costruire in memoria l'intero documento. Il file prodotto è identico a quello generato da Gson,
+ * con o senza indentazione
+ *
+ * @author Lorenzo Deriu
+ */
+public class JsonBackup {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String INDENT = "  ";
+
+	/**
+	 * Metodo che carica i dati del gioco dal file di backup
+	 * @param backupFile file di backup
+	 * @return dati del gioco, null se il file è vuoto
+	 * @throws MalformedJsonException se il file non è un documento JSON completo
+	 * @throws IOException
+	 */
+	public static WordleData load(File backupFile) throws IOException {
+		FileChannel channel = FileChannel.open(backupFile.toPath(), StandardOpenOption.READ);
+		JsonReader reader = new JsonReader(new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE));
+
+		try {
+			reader.peek();
+		} catch (EOFException e) { // il file è vuoto
+			reader.close();
+			return null;
+		}
+
+		try {
+			return WordleData.readJson(reader);
+		} catch (EOFException e) { // il file termina prima della fine del documento
+			throw new MalformedJsonException(e.getMessage());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Metodo che scrive i dati del gioco nel file indicato
+	 * @param data dati del gioco
+	 * @param file file da scrivere
+	 * @param prettyPrinting true per indentare il documento come fa Gson con setPrettyPrinting(), false per scriverlo su una sola riga
+	 * @throws IOException
+	 */
+	public static void save(WordleData data, File file, Boolean prettyPrinting) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		JsonWriter writer = new JsonWriter(new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE));
+
+		if (prettyPrinting) {
+			writer.setIndent(INDENT);
+		}
+		writer.setHtmlSafe(true); // stesso escaping dei caratteri utilizzato da Gson
+
+		try {
+			data.writeJson(writer);
+			writer.flush();
+			channel.force(false);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Metodo che consuma il valore null se è il prossimo valore del documento
+	 * @param reader JsonReader da cui leggere
+	 * @return true se il valore era null, false altrimenti
+	 * @throws IOException
+	 */
+	public static Boolean skipNull(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Metodo che legge una stringa che può essere null
+	 * @param reader JsonReader da cui leggere
+	 * @return stringa letta
+	 * @throws IOException
+	 */
+	public static String nextString(JsonReader reader) throws IOException {
+		return skipNull(reader) ? null : reader.nextString();
+	}
+
+	/**
+	 * Metodo che legge un Boolean che può essere null
+	 * @param reader JsonReader da cui leggere
+	 * @return Boolean letto
+	 * @throws IOException
+	 */
+	public static Boolean nextBoolean(JsonReader reader) throws IOException {
+		return skipNull(reader) ? null : reader.nextBoolean();
+	}
+}
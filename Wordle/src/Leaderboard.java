@@ -0,0 +1,375 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Classe che rappresenta la classifica globale degli utenti che hanno giocato almeno una partita.
+ * Gli utenti sono ordinati per numero di vittorie decrescente e, a parità di vittorie, per media dei tentativi crescente
+ * (a parità di vittorie basta confrontare la somma dei tentativi), infine per username.
+ * La classifica è un treap in cui ogni nodo conosce la dimensione del proprio sottoalbero, in modo che l'aggiornamento
+ * di un utente e il calcolo della sua posizione costino O(log n) e le prime K posizioni O(log n + K).
+ * Le letture condividono il lock, quindi le richieste della classifica non si bloccano a vicenda
+ * e le partite concluse attendono al più una singola lettura
+ *
+ * @author Lorenzo Deriu
+ */
+public class Leaderboard {
+	public static final int MAX_TOP = 100; // numero massimo di posizioni inviate con una richiesta
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final HashMap<String, Node> nodes = new HashMap<>(); // nodo attuale di ogni utente, per rimuoverlo all'aggiornamento
+	private final Random random = new Random();
+
+	private Node root;
+
+	/**
+	 * Classe che rappresenta un nodo del treap, le chiavi non cambiano: un utente che conclude una partita viene
+	 * rimosso e reinserito con un nuovo nodo
+	 */
+	private static class Node {
+		private final String username;
+		private final int wins;
+		private final int winningAttempts;
+		private final int priority;
+
+		private Node left;
+		private Node right;
+		private int size; // numero di nodi del sottoalbero
+
+		/**
+		 * Costruttore della classe Node
+		 * @param username username dell'utente
+		 * @param wins numero di vittorie
+		 * @param winningAttempts somma dei tentativi delle partite vinte
+		 * @param priority priorità casuale che determina la posizione del nodo nel treap
+		 */
+		private Node(String username, int wins, int winningAttempts, int priority) {
+			this.username = username;
+			this.wins = wins;
+			this.winningAttempts = winningAttempts;
+			this.priority = priority;
+			this.size = 1;
+		}
+	}
+
+	/**
+	 * Classe che rappresenta una posizione della classifica, inviata al client
+	 */
+	public static class Entry {
+		private final int rank;
+		private final String username;
+		private final int wins;
+		private final int winningAttempts;
+
+		/**
+		 * Costruttore della classe
+		 * @param rank posizione in classifica, a partire da 1
+		 * @param username username dell'utente
+		 * @param wins numero di vittorie
+		 * @param winningAttempts somma dei tentativi delle partite vinte
+		 */
+		public Entry(int rank, String username, int wins, int winningAttempts) {
+			this.rank = rank;
+			this.username = username;
+			this.wins = wins;
+			this.winningAttempts = winningAttempts;
+		}
+
+		/**
+		 * Metodo che restituisce la posizione in classifica
+		 * @return posizione, a partire da 1
+		 */
+		public int getRank() {
+			return rank;
+		}
+
+		/**
+		 * Metodo che restituisce l'username dell'utente
+		 * @return username
+		 */
+		public String getUsername() {
+			return username;
+		}
+
+		/**
+		 * Metodo che restituisce il numero di vittorie
+		 * @return numero di vittorie
+		 */
+		public int getWins() {
+			return wins;
+		}
+
+		/**
+		 * Metodo che restituisce la media dei tentativi delle partite vinte
+		 * @return media dei tentativi, 0 se l'utente non ha vittorie
+		 */
+		public double getAverageAttempts() {
+			return wins == 0 ? 0 : (double) winningAttempts / wins;
+		}
+
+		/**
+		 * Metodo che restituisce il numero massimo di byte occupati dalla posizione con writeTo()
+		 * @return limite superiore della dimensione in byte
+		 */
+		public int maxBinarySize() {
+			return 16 + 3 * username.length();
+		}
+
+		/**
+		 * Metodo che scrive la posizione nel buffer
+		 * @param buffer buffer su cui scrivere
+		 */
+		public void writeTo(ByteBuffer buffer) {
+			byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+
+			buffer.putInt(rank);
+			buffer.putInt(usernameBytes.length);
+			buffer.put(usernameBytes);
+			buffer.putInt(wins);
+			buffer.putInt(winningAttempts);
+		}
+
+		/**
+		 * Metodo che legge una posizione scritta da writeTo()
+		 * @param buffer buffer da cui leggere
+		 * @return posizione letta
+		 */
+		public static Entry readFrom(ByteBuffer buffer) {
+			int rank = buffer.getInt();
+
+			byte[] usernameBytes = new byte[buffer.getInt()];
+			buffer.get(usernameBytes);
+
+			return new Entry(rank, new String(usernameBytes, StandardCharsets.UTF_8), buffer.getInt(), buffer.getInt());
+		}
+	}
+
+	/**
+	 * Metodo che aggiorna la posizione dell'utente dopo una partita conclusa, inserendolo se non era ancora in classifica
+	 * @param username username dell'utente
+	 * @param wins numero di vittorie
+	 * @param winningAttempts somma dei tentativi delle partite vinte
+	 */
+	public void update(String username, int wins, int winningAttempts) {
+		lock.writeLock().lock();
+
+		try {
+			Node old = nodes.get(username);
+
+			if (old != null) {
+				if (old.wins == wins && old.winningAttempts == winningAttempts) return;
+
+				root = remove(root, old);
+			}
+
+			Node node = new Node(username, wins, winningAttempts, random.nextInt());
+			nodes.put(username, node);
+			root = insert(root, node);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Metodo che restituisce le prime posizioni della classifica
+	 * @param count numero di posizioni richieste
+	 * @return posizioni in ordine di classifica
+	 */
+	public ArrayList<Entry> top(int count) {
+		lock.readLock().lock();
+
+		try {
+			ArrayList<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, size(root))));
+			ArrayDeque<Node> path = new ArrayDeque<>();
+			Node node = root;
+
+			// visita in ordine, interrotta dopo count nodi
+			while (entries.size() < count && (node != null || !path.isEmpty())) {
+				while (node != null) {
+					path.push(node);
+					node = node.left;
+				}
+
+				node = path.pop();
+				entries.add(new Entry(entries.size() + 1, node.username, node.wins, node.winningAttempts));
+				node = node.right;
+			}
+
+			return entries;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Metodo che restituisce la posizione dell'utente
+	 * @param username username dell'utente
+	 * @return posizione dell'utente, null se l'utente non ha ancora concluso una partita
+	 */
+	public Entry entryOf(String username) {
+		lock.readLock().lock();
+
+		try {
+			Node target = nodes.get(username);
+
+			if (target == null) return null;
+
+			int rank = 0;
+			Node node = root;
+
+			while (node != null) {
+				int comparison = compare(target, node);
+
+				if (comparison < 0) {
+					node = node.left;
+				} else {
+					rank += size(node.left) + 1;
+					node = (comparison == 0) ? null : node.right;
+				}
+			}
+
+			return new Entry(rank, target.username, target.wins, target.winningAttempts);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Metodo che restituisce il numero di utenti in classifica
+	 * @return numero di utenti in classifica
+	 */
+	public int size() {
+		lock.readLock().lock();
+
+		try {
+			return size(root);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Metodo che confronta due nodi secondo l'ordine della classifica
+	 * @param a primo nodo
+	 * @param b secondo nodo
+	 * @return un numero negativo se a precede b, positivo se b precede a, 0 se sono lo stesso utente
+	 */
+	private static int compare(Node a, Node b) {
+		if (a.wins != b.wins) return Integer.compare(b.wins, a.wins);
+		if (a.winningAttempts != b.winningAttempts) return Integer.compare(a.winningAttempts, b.winningAttempts);
+
+		return a.username.compareTo(b.username);
+	}
+
+	/**
+	 * Metodo che inserisce il nodo nel sottoalbero, ruotandolo verso l'alto finché la sua priorità lo richiede
+	 * @param root radice del sottoalbero, null se il sottoalbero è vuoto
+	 * @param node nodo da inserire
+	 * @return nuova radice del sottoalbero
+	 */
+	private static Node insert(Node root, Node node) {
+		if (root == null) return node;
+
+		if (compare(node, root) < 0) {
+			root.left = insert(root.left, node);
+			if (root.left.priority > root.priority) root = rotateRight(root);
+		} else {
+			root.right = insert(root.right, node);
+			if (root.right.priority > root.priority) root = rotateLeft(root);
+		}
+
+		return resize(root);
+	}
+
+	/**
+	 * Metodo che rimuove il nodo dal sottoalbero, sostituendolo con l'unione dei suoi figli
+	 * @param root radice del sottoalbero, null se il sottoalbero è vuoto
+	 * @param node nodo da rimuovere
+	 * @return nuova radice del sottoalbero
+	 */
+	private static Node remove(Node root, Node node) {
+		if (root == null) return null;
+
+		int comparison = compare(node, root);
+
+		if (comparison == 0) return merge(root.left, root.right);
+
+		if (comparison < 0) {
+			root.left = remove(root.left, node);
+		} else {
+			root.right = remove(root.right, node);
+		}
+
+		return resize(root);
+	}
+
+	/**
+	 * Metodo che unisce due sottoalberi, tutti i nodi di left precedono quelli di right.
+	 * Diventa radice il nodo con la priorità maggiore tra le due radici
+	 * @param left sottoalbero con i nodi che precedono, può essere null
+	 * @param right sottoalbero con i nodi che seguono, può essere null
+	 * @return radice del sottoalbero unito, null se entrambi sono vuoti
+	 */
+	private static Node merge(Node left, Node right) {
+		if (left == null) return right;
+		if (right == null) return left;
+
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			return resize(left);
+		}
+
+		right.left = merge(left, right.left);
+		return resize(right);
+	}
+
+	/**
+	 * Metodo che ruota il sottoalbero verso destra: il figlio sinistro diventa la radice e la vecchia radice il suo figlio destro
+	 * @param node radice del sottoalbero, deve avere un figlio sinistro
+	 * @return nuova radice del sottoalbero, la cui dimensione va aggiornata dal chiamante
+	 */
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = resize(node);
+
+		return left;
+	}
+
+	/**
+	 * Metodo che ruota il sottoalbero verso sinistra: il figlio destro diventa la radice e la vecchia radice il suo figlio sinistro
+	 * @param node radice del sottoalbero, deve avere un figlio destro
+	 * @return nuova radice del sottoalbero, la cui dimensione va aggiornata dal chiamante
+	 */
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = resize(node);
+
+		return right;
+	}
+
+	/**
+	 * Metodo che aggiorna il numero di nodi del sottoalbero a partire da quelli dei figli
+	 * @param node radice del sottoalbero
+	 * @return lo stesso nodo, per poterlo restituire direttamente dai metodi che modificano l'albero
+	 */
+	private static Node resize(Node node) {
+		node.size = size(node.left) + size(node.right) + 1;
+
+		return node;
+	}
+
+	/**
+	 * Metodo che restituisce il numero di nodi del sottoalbero
+	 * @param node radice del sottoalbero, può essere null
+	 * @return numero di nodi del sottoalbero, 0 se è vuoto
+	 */
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+}
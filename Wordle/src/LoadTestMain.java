@@ -0,0 +1,227 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Classe che misura la memoria occupata dal server per ogni sessione aperta.
+ * Avvia il server in un processo separato (ServerStarterMain, con lo stesso classpath), con il file di configurazione
+ * e il backup della directory corrente, registra e fa accedere il numero di utenti indicato mantenendo aperte le loro connessioni,
+ * infine stampa la memoria residente (RSS) e il numero di thread del solo processo del server, letti da /proc/<pid>/status,
+ * prima e dopo l'apertura delle sessioni.
+ * Deve essere eseguita in una copia della directory del server, perché gli utenti creati vengono salvati nel backup.
+ * Utilizzo: java LoadTestMain numeroDiSessioni
+ *
+ * @author Lorenzo Deriu
+ */
+public class LoadTestMain {
+	private static final String USERNAME_PREFIX = "load-";
+	private static final String PASSWORD = "password";
+	private static final long CONNECTION_RETRY_DELAY = 200;
+	private static final long MEASURE_DELAY = 1000; // attesa prima di ogni misura, perché il server completi le sessioni appena aperte
+
+	public static void main(String[] args) {
+		int sessions = 0;
+
+		try {
+			sessions = Integer.parseInt(args[0]);
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			System.out.println(ServerOutputMessage.LoadTestUsageMessage);
+			System.exit(1);
+		}
+
+		Process server = null;
+
+		try {
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+			server = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "ServerStarterMain")
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		} catch (IOException e) {
+			System.out.println(ServerOutputMessage.LoadTestServerErrorMessage);
+			System.exit(1);
+		}
+
+		ArrayList<SocketChannel> connections = new ArrayList<>();
+
+		try {
+			InetSocketAddress address = new InetSocketAddress("localhost", readPort("configServer.txt"));
+			ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+			if (!waitForServer(address, server)) {
+				System.out.println(ServerOutputMessage.LoadTestServerErrorMessage);
+				System.exit(1);
+			}
+
+			printMemory(ServerOutputMessage.LoadTestBeforeMessage, 0, server.pid());
+
+			for (int i = 0; i < sessions; i++) {
+				String username = USERNAME_PREFIX + i;
+
+				SocketChannel registration = SocketChannel.open(address);
+				request(registration, ClientRequest.REGISTER, username, buffer); // fallisce se l'utente esiste già da un'esecuzione precedente
+				registration.close();
+
+				SocketChannel connection = SocketChannel.open(address);
+				connections.add(connection);
+
+				if (request(connection, ClientRequest.LOGIN, username, buffer) != ServerResponse.SUCCESS) {
+					System.out.printf(ServerOutputMessage.LoadTestLoginErrorMessage, username);
+					break;
+				}
+			}
+
+			printMemory(ServerOutputMessage.LoadTestAfterMessage, connections.size(), server.pid());
+		} catch (IOException e) {
+			System.out.println(ServerOutputMessage.SocketOpeningError);
+		}
+
+		ByteBuffer logout = ByteBuffer.allocate(8);
+		logout.putInt(4).putInt(ClientRequest.LOGOUT);
+
+		for (SocketChannel connection : connections) {
+			try {
+				logout.flip();
+				connection.write(logout);
+				connection.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		// ServerStarterMain termina il server alla prima riga letta dallo standard input
+		try (OutputStream serverInput = server.getOutputStream()) {
+			serverInput.write('\n');
+		} catch (IOException e) {
+			server.destroy();
+		}
+
+		try {
+			server.waitFor();
+		} catch (InterruptedException e) {
+			System.out.println(ServerOutputMessage.InterrputedExceptionMessage);
+		}
+	}
+
+	/**
+	 * Metodo che legge la porta del server dalla prima riga del file di configurazione
+	 * @param configurationFileName nome del file di configurazione
+	 * @return porta del server
+	 * @throws IOException se il file non può essere letto
+	 */
+	private static int readPort(String configurationFileName) throws IOException {
+		try (BufferedReader bufferedReader = new BufferedReader(new FileReader(new File(configurationFileName)))) {
+			return Integer.parseInt(bufferedReader.readLine());
+		}
+	}
+
+	/**
+	 * Metodo che attende che il server accetti connessioni
+	 * @param address indirizzo del server
+	 * @param server processo del server
+	 * @return true se il server accetta connessioni, false se il processo è terminato prima
+	 */
+	private static Boolean waitForServer(InetSocketAddress address, Process server) {
+		while (server.isAlive()) {
+			try {
+				SocketChannel.open(address).close();
+				return true;
+			} catch (IOException e) {
+				try { Thread.sleep(CONNECTION_RETRY_DELAY); }
+				catch (InterruptedException interruptedException) { return false; }
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Metodo che invia una richiesta con username e password e attende la risposta del server
+	 * @param connection connessione su cui inviare la richiesta
+	 * @param code codice della richiesta, REGISTER oppure LOGIN
+	 * @param username username dell'utente, la password è PASSWORD
+	 * @param buffer buffer utilizzato per la richiesta e per la risposta
+	 * @return codice della risposta
+	 * @throws IOException se la connessione viene chiusa
+	 */
+	private static int request(SocketChannel connection, int code, String username, ByteBuffer buffer) throws IOException {
+		byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+		byte[] passwordBytes = PASSWORD.getBytes(StandardCharsets.UTF_8);
+
+		buffer.clear();
+		int frameStart = FrameCodec.beginFrame(buffer);
+		buffer.putInt(code);
+		buffer.putInt(usernameBytes.length);
+		buffer.put(usernameBytes);
+		buffer.putInt(passwordBytes.length);
+		buffer.put(passwordBytes);
+		FrameCodec.endFrame(buffer, frameStart);
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			connection.write(buffer);
+		}
+
+		buffer.clear();
+		buffer.limit(4);
+		readFully(connection, buffer);
+		buffer.limit(4 + buffer.getInt(0));
+		readFully(connection, buffer);
+
+		return buffer.getInt(4);
+	}
+
+	/**
+	 * Metodo che legge dalla connessione fino a riempire il buffer
+	 * @param connection connessione da cui leggere
+	 * @param buffer buffer da riempire fino al limite
+	 * @throws IOException se la connessione viene chiusa
+	 */
+	private static void readFully(SocketChannel connection, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (connection.read(buffer) == -1) throw new IOException(ServerOutputMessage.ConnectionError);
+		}
+	}
+
+	/**
+	 * Metodo che stampa la memoria residente e il numero di thread del processo del server
+	 * @param message messaggio da stampare prima delle misure
+	 * @param sessions numero di sessioni aperte
+	 * @param pid identificativo del processo del server
+	 */
+	private static void printMemory(String message, int sessions, long pid) {
+		try { Thread.sleep(MEASURE_DELAY); }
+		catch (InterruptedException e) { return; }
+
+		System.out.printf(message, sessions);
+		System.out.printf(ServerOutputMessage.LoadTestMemoryMessage, readStatus(pid, "VmRSS:"), readStatus(pid, "Threads:"));
+	}
+
+	/**
+	 * Metodo che legge un valore numerico da /proc/<pid>/status
+	 * @param pid identificativo del processo
+	 * @param field nome del campo, compresi i due punti
+	 * @return valore del campo (in KB per i campi di memoria), -1 se non è disponibile
+	 */
+	private static long readStatus(long pid, String field) {
+		try (BufferedReader bufferedReader = new BufferedReader(new FileReader("/proc/" + pid + "/status"))) {
+			String line;
+
+			while ((line = bufferedReader.readLine()) != null) {
+				if (line.startsWith(field)) {
+					return Long.parseLong(line.replaceAll("[^0-9]", ""));
+				}
+			}
+		} catch (IOException | NumberFormatException e) {}
+
+		return -1;
+	}
+}
@@ -1,16 +1,20 @@
 import java.io.IOException;
-import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
-import java.net.NetworkInterface;
 import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
 import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.ArrayList;
 /**
  * Classe che rappresenta il thread che si occupa di ricevere le notifiche
- * Implementa Runnable per poter essere eseguito in un thread
+ * Implementa Runnable per poter essere eseguito in un thread.
+ * Il thread resta bloccato sulla ricezione dal gruppo multicast finché non arriva un datagramma,
+ * e riceve sempre nello stesso buffer diretto; stop() chiude il canale e sblocca la ricezione
  * 
  * @author Lorenzo Deriu
  */
@@ -18,60 +22,126 @@ public class NotificationHandler implements Runnable {
 	private String multicastAddress;
 	private int port;
 
-	private ArrayList<String> messageReceived;
+	private Vocabulary vocabulary; // dizionario con cui ricavare le parole dei messaggi
+	private int vocabularyFingerprint;
 
-	private Boolean stop;
+	private NotificationLog<ShareMessage> messageReceived; // ultimi messaggi ricevuti, formattati solo quando vengono stampati
+	private long lastPrintedSequence; // ultima notifica già mostrata all'utente
+
+	private static final int NOTIFICATION_CAPACITY = 256;
+	private static final long NOTIFICATION_MAX_AGE = 24 * 60 * 60 * 1000;
+
+	private final ByteBuffer datagram; // buffer di ricezione, riutilizzato per tutti i datagrammi
+
+	private volatile DatagramChannel channel;
+	private volatile Boolean stop;
+	private Thread thread; // thread dell'ultima ricezione avviata
 
 	/**
 	 * Costruttore della classe
 	 * @param multicastAddress indirizzo multicast a cui connettersi
 	 * @param port porta a cui connettersi
+	 * @param vocabulary dizionario del client
 	 */
-	public NotificationHandler(String multicastAddress, int port) {
+	public NotificationHandler(String multicastAddress, int port, Vocabulary vocabulary) {
 		this.multicastAddress = multicastAddress;
 		this.port = port;
+		this.vocabulary = vocabulary;
+		this.vocabularyFingerprint = ShareMessage.fingerprint(vocabulary);
+
+		this.messageReceived = new NotificationLog<>(NOTIFICATION_CAPACITY, NOTIFICATION_MAX_AGE);
+		this.lastPrintedSequence = 0;
+
+		this.datagram = ByteBuffer.allocateDirect(ShareDispatcher.MAX_DATAGRAM_SIZE);
+
+		this.stop = false;
+		this.thread = null;
+	}
+
+	/**
+	 * Metodo che avvia la ricezione delle notifiche in un nuovo thread.
+	 * Attende la fine della ricezione precedente, già fermata con stop(), prima di azzerare il flag,
+	 * così uno stop() chiamato prima che il canale fosse pronto non viene perso
+	 */
+	public void start() {
+		if (thread != null) {
+			try { thread.join(); }
+			catch (InterruptedException e) { System.out.println(ClientOutputMessage.InterruptedExceptionMessage); }
+		}
+
+		stop = false;
+		thread = new Thread(this);
+		thread.start();
 	}
 
 	/**
 	 * Implementazione del metodo run() di Runnable
 	 */
 	public void run() {
-		try {
-			MulticastSocket multicastSocket = new MulticastSocket(port);
+		try (DatagramChannel datagramChannel = DatagramChannel.open(StandardProtocolFamily.INET)) {
 			InetAddress multicastInetAddress = InetAddress.getByName(multicastAddress);
-			InetSocketAddress multicastGroup = new InetSocketAddress(multicastInetAddress, port);
-			NetworkInterface networkInterface = NetworkInterface.getByName("lo0");
 
-			multicastSocket.joinGroup(new InetSocketAddress(multicastInetAddress, 0), networkInterface);
+			datagramChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			datagramChannel.bind(new InetSocketAddress(port));
+			datagramChannel.join(multicastInetAddress, ShareDispatcher.multicastInterface());
+
+			channel = datagramChannel;
+
+			if (stop) return; // stop() chiamato prima che il canale fosse pronto
 
-			multicastSocket.setSoTimeout(10);
-			
-			this.messageReceived = new ArrayList<>();
-			stop = false;
-			
 			while (!stop) {
-				try {
-					DatagramPacket receivedPacket = new DatagramPacket(new byte[512], 512);
-					multicastSocket.receive(receivedPacket);
-					messageReceived.add(new String(receivedPacket.getData()));
-				} catch (SocketTimeoutException e) {}
+				datagram.clear();
+				datagramChannel.receive(datagram);
+				datagram.flip();
+
+				addMessages(datagram);
 			}
 
-			multicastSocket.leaveGroup(multicastGroup, networkInterface);
-			multicastSocket.close();
-		
+		} catch (ClosedChannelException e) { // canale chiuso da stop()
 		} catch (UnknownHostException | SocketException e) {
 			System.out.println(ClientOutputMessage.MulticastSocketErrorMessage);
 		} catch (IOException e) {
-			e.printStackTrace();
+			if (!stop) e.printStackTrace();
+		} finally {
+			channel = null;
 		}
 	}
 
 	/**
-	 * Metodo che stampa le notifiche ricevute
+	 * Metodo che aggiunge i messaggi contenuti in un datagramma, nel formato descritto in ShareMessage.
+	 * I datagrammi con una versione del formato sconosciuta vengono scartati.
+	 * Utilizzato anche per i frame SHARES ricevuti sulla connessione con il server, che hanno lo stesso contenuto
+	 * @param buffer contenuto del datagramma, pronto per la lettura
+	 */
+	public void addMessages(ByteBuffer buffer) {
+		if (buffer.remaining() < ShareMessage.HEADER_SIZE || buffer.get() != ShareMessage.VERSION) return;
+
+		Boolean sameVocabulary = buffer.getInt() == vocabularyFingerprint;
+
+		try {
+			while (buffer.hasRemaining()) {
+				ShareMessage message = ShareMessage.readFrom(buffer);
+
+				messageReceived.add(sameVocabulary ? message : message.withoutWord());
+			}
+		} catch (BufferUnderflowException e) {} // datagramma troncato, i messaggi completi sono già stati aggiunti
+	}
+
+	/**
+	 * Metodo che stampa le notifiche ricevute dopo l'ultima stampa
 	 */
 	public void printNotification() {
-		messageReceived.forEach((msg) -> System.out.println(msg));
+		ArrayList<NotificationLog.Notification<ShareMessage>> notifications = messageReceived.readAfter(lastPrintedSequence);
+
+		if (notifications.isEmpty()) {
+			System.out.println(ClientOutputMessage.NoNewNotification);
+			return;
+		}
+
+		for (NotificationLog.Notification<ShareMessage> notification : notifications) {
+			System.out.println(notification.getMessage().render(vocabulary));
+			lastPrintedSequence = notification.getSequence();
+		}
 
 		System.out.print("\n");
 	}
@@ -81,5 +151,12 @@ public class NotificationHandler implements Runnable {
 	 */
 	public void stop() {
 		stop = true;
+
+		DatagramChannel datagramChannel = channel;
+
+		if (datagramChannel != null) {
+			try { datagramChannel.close(); } // sblocca la ricezione in corso
+			catch (IOException e) {}
+		}
 	}
 }
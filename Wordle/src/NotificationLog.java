@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Classe che rappresenta un registro di notifiche di dimensione fissa, utilizzato sia dal server (testo delle notifiche)
+ * sia dal client (messaggi condivisi ancora da formattare).
+ * Ogni notifica riceve un numero di sequenza crescente (a partire da 1) e viene scritta nella posizione
+ * sequenza % capacità di un buffer circolare, sostituendo la notifica più vecchia: la memoria occupata non cresce
+ * con il numero di notifiche. Le notifiche più vecchie di maxAge vengono ignorate dalle letture.
+ * Scritture e letture non acquisiscono lock: chi legge riceve tutte le notifiche successive a una sequenza
+ * e può riprendere dall'ultima sequenza ricevuta
+ *
+ * @param <T> tipo del contenuto delle notifiche
+ * @author Lorenzo Deriu
+ */
+public class NotificationLog<T> {
+	private final AtomicReferenceArray<Notification<T>> slots;
+	private final int mask;
+	private final long maxAge;
+
+	private final AtomicLong lastSequence; // ultima sequenza assegnata
+
+	/**
+	 * Classe immutabile che rappresenta una notifica del registro
+	 */
+	public static class Notification<T> {
+		private final long sequence;
+		private final long timestamp;
+		private final T message;
+
+		private Notification(long sequence, long timestamp, T message) {
+			this.sequence = sequence;
+			this.timestamp = timestamp;
+			this.message = message;
+		}
+
+		/**
+		 * Metodo che restituisce il numero di sequenza della notifica
+		 * @return numero di sequenza
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * Metodo che restituisce il momento in cui la notifica è stata aggiunta
+		 * @return momento di aggiunta in millisecondi
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * Metodo che restituisce il contenuto della notifica
+		 * @return contenuto della notifica
+		 */
+		public T getMessage() {
+			return message;
+		}
+	}
+
+	/**
+	 * Costruttore della classe
+	 * @param capacity numero massimo di notifiche mantenute, arrotondato alla potenza di 2 successiva
+	 * @param maxAge età massima in millisecondi delle notifiche restituite dalle letture
+	 */
+	public NotificationLog(int capacity, long maxAge) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.maxAge = maxAge;
+		this.lastSequence = new AtomicLong(0);
+	}
+
+	/**
+	 * Metodo che aggiunge una notifica
+	 * @param message contenuto della notifica
+	 * @return numero di sequenza della notifica
+	 */
+	public long add(T message) {
+		return add(message, System.currentTimeMillis());
+	}
+
+	/**
+	 * Metodo che aggiunge una notifica, sostituendo la più vecchia se il registro è pieno
+	 * @param message contenuto della notifica
+	 * @param timestamp momento di aggiunta in millisecondi
+	 * @return numero di sequenza della notifica
+	 */
+	public long add(T message, long timestamp) {
+		long sequence = lastSequence.incrementAndGet();
+		Notification<T> notification = new Notification<>(sequence, timestamp, message);
+		int slot = (int) (sequence & mask);
+
+		// un produttore più lento potrebbe trovare il posto già occupato da una notifica successiva, che va mantenuta
+		Notification<T> current;
+		do {
+			current = slots.get(slot);
+
+			if (current != null && current.sequence > sequence) break;
+		} while (!slots.compareAndSet(slot, current, notification));
+
+		return sequence;
+	}
+
+	/**
+	 * Metodo che restituisce le notifiche successive alla sequenza indicata, in ordine di sequenza.
+	 * Le notifiche già sostituite o più vecchie di maxAge vengono saltate; la lettura si ferma alla prima
+	 * notifica non ancora scritta da un produttore, che verrà restituita dalla lettura successiva
+	 * @param sequence ultima sequenza già letta, 0 per leggere tutte le notifiche
+	 * @return notifiche successive alla sequenza indicata
+	 */
+	public ArrayList<Notification<T>> readAfter(long sequence) {
+		long last = lastSequence.get();
+		long first = Math.max(sequence + 1, last - mask);
+		long oldest = System.currentTimeMillis() - maxAge;
+
+		ArrayList<Notification<T>> notifications = new ArrayList<>((int) Math.max(0, last - first + 1));
+
+		for (long next = first; next <= last; next++) {
+			Notification<T> notification = slots.get((int) (next & mask));
+
+			if (notification == null || notification.sequence < next) break; // non ancora scritta
+			if (notification.sequence > next) continue; // già sostituita
+
+			if (notification.timestamp >= oldest) {
+				notifications.add(notification);
+			}
+		}
+
+		return notifications;
+	}
+
+	/**
+	 * Metodo che restituisce l'ultima sequenza assegnata
+	 * @return ultima sequenza, 0 se non sono state aggiunte notifiche
+	 */
+	public long getLastSequence() {
+		return lastSequence.get();
+	}
+}
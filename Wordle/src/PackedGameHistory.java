@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Classe che rappresenta le partite giocate da un utente in forma compatta: ogni partita occupa un solo long
+ * di un array, al posto di un oggetto GameRecord con la sua copia della parola.
+ * I bit di ogni long sono organizzati nel seguente modo, a partire dal più significativo:
+ * 36 bit per il momento di fine partita in secondi (0 se sconosciuto), 21 bit per l'identificativo della parola (WordTable),
+ * 2 bit per l'esito (0 non indovinata, 1 indovinata, 2 sconosciuto) e 5 bit per il numero di tentativi
+ *
+ * @author Lorenzo Deriu
+ */
+public class PackedGameHistory {
+	private static final int ATTEMPTS_BITS = 5;
+	private static final int GUESSED_BITS = 2;
+	private static final int WORD_BITS = 21;
+
+	private static final int GUESSED_SHIFT = ATTEMPTS_BITS;
+	private static final int WORD_SHIFT = GUESSED_SHIFT + GUESSED_BITS;
+	private static final int TIMESTAMP_SHIFT = WORD_SHIFT + WORD_BITS;
+
+	private static final int MAX_ATTEMPTS = (1 << ATTEMPTS_BITS) - 1;
+	private static final int NULL_WORD = (1 << WORD_BITS) - 1;
+	private static final long MAX_TIMESTAMP = (1L << (64 - TIMESTAMP_SHIFT)) - 1;
+
+	private static final long[] EMPTY = new long[0];
+
+	private long[] records;
+	private int size;
+
+	/**
+	 * Costruttore della classe
+	 */
+	public PackedGameHistory() {
+		this.records = EMPTY;
+		this.size = 0;
+	}
+
+	/**
+	 * Costruttore della classe
+	 * @param records partite giocate in forma compatta
+	 * @param size numero di partite
+	 */
+	private PackedGameHistory(long[] records, int size) {
+		this.records = records;
+		this.size = size;
+	}
+
+	/**
+	 * Metodo che aggiunge una partita
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param word parola da indovinare
+	 * @param timestamp momento di fine partita in millisecondi, 0 se sconosciuto
+	 */
+	public void add(int attemptsCount, Boolean guessed, String word, long timestamp) {
+		long attempts = Math.max(0, Math.min(attemptsCount, MAX_ATTEMPTS));
+		long outcome = guessed == null ? 2 : (guessed ? 1 : 0);
+		long wordId = word == null ? NULL_WORD : WordTable.idOf(word);
+		long seconds = Math.max(0, Math.min(timestamp / 1000, MAX_TIMESTAMP));
+
+		if (wordId >= NULL_WORD) {
+			throw new IllegalStateException("Troppe parole diverse nello storico delle partite");
+		}
+
+		if (size == records.length) {
+			records = Arrays.copyOf(records, Math.max(4, size + (size >> 1)));
+		}
+
+		records[size++] = (seconds << TIMESTAMP_SHIFT) | (wordId << WORD_SHIFT) | (outcome << GUESSED_SHIFT) | attempts;
+	}
+
+	/**
+	 * Metodo che aggiunge una partita
+	 * @param record partita da aggiungere
+	 * @param timestamp momento di fine partita in millisecondi, 0 se sconosciuto
+	 */
+	public void add(GameRecord record, long timestamp) {
+		add(record.getAttemptsCount(), record.guessed(), record.getWordToGuess(), timestamp);
+	}
+
+	/**
+	 * Metodo che restituisce il numero di partite giocate
+	 * @return numero di partite
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Metodo che restituisce il numero di tentativi della partita indicata
+	 * @param index posizione della partita
+	 * @return numero di tentativi
+	 */
+	public int getAttemptsCount(int index) {
+		return (int) (record(index) & MAX_ATTEMPTS);
+	}
+
+	/**
+	 * Metodo che restituisce l'esito della partita indicata
+	 * @param index posizione della partita
+	 * @return true se la parola è stata indovinata, false altrimenti, null se sconosciuto
+	 */
+	public Boolean guessed(int index) {
+		int outcome = (int) ((record(index) >>> GUESSED_SHIFT) & 3);
+
+		return outcome == 2 ? null : outcome == 1;
+	}
+
+	/**
+	 * Metodo che restituisce la parola da indovinare nella partita indicata
+	 * @param index posizione della partita
+	 * @return parola da indovinare
+	 */
+	public String getWordToGuess(int index) {
+		int wordId = (int) ((record(index) >>> WORD_SHIFT) & NULL_WORD);
+
+		return wordId == NULL_WORD ? null : WordTable.wordOf(wordId);
+	}
+
+	/**
+	 * Metodo che restituisce il momento di fine della partita indicata
+	 * @param index posizione della partita
+	 * @return momento di fine partita in millisecondi, 0 se sconosciuto
+	 */
+	public long getTimestamp(int index) {
+		return (record(index) >>> TIMESTAMP_SHIFT) * 1000;
+	}
+
+	/**
+	 * Metodo che crea il GameRecord della partita indicata
+	 * @param index posizione della partita
+	 * @return partita giocata
+	 */
+	public GameRecord get(int index) {
+		return new GameRecord(getAttemptsCount(index), guessed(index), getWordToGuess(index), getTimestamp(index));
+	}
+
+	/**
+	 * Metodo che crea la lista dei GameRecord di tutte le partite giocate
+	 * @return lista delle partite giocate
+	 */
+	public ArrayList<GameRecord> toGameRecords() {
+		ArrayList<GameRecord> gameRecords = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			gameRecords.add(get(i));
+		}
+
+		return gameRecords;
+	}
+
+	/**
+	 * Metodo che restituisce una copia dello storico
+	 * @return copia dello storico
+	 */
+	public PackedGameHistory copy() {
+		return new PackedGameHistory(size == 0 ? EMPTY : Arrays.copyOf(records, size), size);
+	}
+
+	/**
+	 * Metodo che restituisce la partita indicata in forma compatta
+	 * @param index posizione della partita
+	 * @return partita in forma compatta
+	 */
+	private long record(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+
+		return records[index];
+	}
+}
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Classe utilizzata dal client per inviare le parole da indovinare e leggere i risultati restituiti dal server.
+ * Una sola parola viene inviata con una richiesta PLAY, più parole (al massimo MAX_WORDS) con una sola richiesta PLAY_BATCH,
+ * composta dal numero di parole seguito dalle parole nello stesso ordine.
+ * Il server risponde a PLAY_BATCH con il numero di risultati seguito dal risultato di ogni parola,
+ * fermandosi alla parola indovinata o al termine dei tentativi; se la parola è stata indovinata
+ * segue l'istante del prossimo cambio della parola segreta
+ *
+ * @author Lorenzo Deriu
+ */
+public class PlayRequest {
+	public static final int MAX_WORDS = 12; // parole inviabili con una sola richiesta, pari ai tentativi per ogni parola segreta
+
+	private static final int WORD_LENGTH = 10;
+	private static final String WINNING_RESPONSE = "++++++++++";
+
+	private final String[] words;
+	private final ByteBuffer request;
+
+	private String[] results;
+	private int resultCount = 0;
+	private Boolean guessed = false;
+	private long nextWordChangeTime = 0;
+
+	/**
+	 * Costruttore della classe, crea la richiesta in un buffer dimensionato sul numero di parole
+	 * @param words parole da inviare, da 1 a MAX_WORDS
+	 * @throws IllegalArgumentException se il numero di parole non è compreso tra 1 e MAX_WORDS
+	 */
+	public PlayRequest(String[] words) {
+		if (words.length == 0 || words.length > MAX_WORDS) throw new IllegalArgumentException();
+
+		this.words = words;
+		this.results = new String[words.length];
+
+		Boolean batch = words.length > 1;
+
+		// lunghezza del frame, codice della richiesta, numero di parole se sono più di una, parole
+		this.request = ByteBuffer.allocate(4 + 4 + (batch ? 4 : 0) + WORD_LENGTH * words.length);
+
+		int frameStart = FrameCodec.beginFrame(request);
+		request.putInt(batch ? ClientRequest.PLAY_BATCH : ClientRequest.PLAY);
+
+		if (batch) request.putInt(words.length);
+
+		for (String word : words) {
+			request.put(word.getBytes(StandardCharsets.US_ASCII));
+		}
+
+		FrameCodec.endFrame(request, frameStart);
+		request.flip();
+	}
+
+	/**
+	 * Metodo che invia la richiesta al server
+	 * @param connection connessione con il server
+	 * @throws IOException
+	 */
+	public void send(SocketChannel connection) throws IOException {
+		request.rewind();
+		FrameCodec.writeFully(request, connection);
+	}
+
+	/**
+	 * Metodo che legge i risultati da una risposta ServerResponse.SUCCESS, di cui è già stato letto il codice
+	 * @param response buffer contenente la risposta del server
+	 * @return numero di risultati letti
+	 * @throws java.nio.BufferUnderflowException se la risposta è incompleta
+	 */
+	public int readResults(ByteBuffer response) {
+		resultCount = (words.length == 1) ? 1 : Math.min(response.getInt(), words.length);
+
+		for (int i = 0; i < resultCount; i++) {
+			byte[] result = new byte[WORD_LENGTH];
+			response.get(result);
+			results[i] = new String(result, StandardCharsets.US_ASCII);
+
+			if (results[i].equals(WINNING_RESPONSE)) {
+				guessed = true;
+				nextWordChangeTime = response.getLong();
+			}
+		}
+
+		return resultCount;
+	}
+
+	/**
+	 * Metodo che restituisce una delle parole inviate
+	 * @param index posizione della parola nella richiesta
+	 * @return parola inviata
+	 */
+	public String getWord(int index) {
+		return words[index];
+	}
+
+	/**
+	 * Metodo che restituisce il risultato di una delle parole inviate, letto con readResults
+	 * @param index posizione della parola nella richiesta, minore del numero di risultati letti
+	 * @return risultato del confronto con la parola segreta
+	 */
+	public String getResult(int index) {
+		return results[index];
+	}
+
+	/**
+	 * Metodo che restituisce true se una delle parole inviate è la parola segreta
+	 * @return true se la parola è stata indovinata, false altrimenti
+	 */
+	public Boolean guessed() {
+		return guessed;
+	}
+
+	/**
+	 * Metodo che restituisce l'istante del prossimo cambio della parola segreta, inviato dal server se la parola è stata indovinata
+	 * @return istante del prossimo cambio della parola in millisecondi, 0 se la parola non è stata indovinata
+	 */
+	public long getNextWordChangeTime() {
+		return nextWordChangeTime;
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Classe immutabile che rappresenta la parola segreta corrente in una forma pronta per il confronto:
+ * la parola in byte, il numero di occorrenze di ogni lettera e la maschera delle lettere presenti.
+ * Viene costruita una sola volta a ogni cambio di parola e condivisa da tutte le sessioni
+ *
+ * @author Lorenzo Deriu
+ */
+public class SecretProfile {
+	private final String word;
+	private final byte[] bytes;
+
+	private final long lowLetterCounts; // occorrenze delle lettere a..m, 4 bit per lettera
+	private final long highLetterCounts; // occorrenze delle lettere n..z, 4 bit per lettera
+	private final int letterMask; // bit i attivo se la lettera 'a' + i è presente
+
+	private final long nextWordChangeTime;
+
+	/**
+	 * Costruttore della classe
+	 * @param word parola segreta
+	 * @param nextWordChangeTime momento del prossimo aggiornamento della parola segreta
+	 */
+	public SecretProfile(String word, long nextWordChangeTime) {
+		this.word = word;
+		this.bytes = word.getBytes();
+		this.nextWordChangeTime = nextWordChangeTime;
+
+		long low = 0;
+		long high = 0;
+		int mask = 0;
+
+		for (int i = 0; i < bytes.length; i++) {
+			int letter = bytes[i] - 'a';
+
+			if (letter < 0 || letter >= 26) continue;
+
+			if (letter < 13) {
+				low += 1L << (4 * letter);
+			} else {
+				high += 1L << (4 * (letter - 13));
+			}
+
+			mask |= 1 << letter;
+		}
+
+		this.lowLetterCounts = low;
+		this.highLetterCounts = high;
+		this.letterMask = mask;
+	}
+
+	/**
+	 * Metodo che restituisce la parola segreta
+	 * @return parola segreta
+	 */
+	public String getWord() {
+		return word;
+	}
+
+	/**
+	 * Metodo che restituisce la lettera della parola segreta nella posizione indicata
+	 * @param position posizione della lettera
+	 * @return lettera in byte
+	 */
+	public byte letterAt(int position) {
+		return bytes[position];
+	}
+
+	/**
+	 * Metodo che restituisce le occorrenze delle lettere a..m, impacchettate in 4 bit per lettera
+	 * @return occorrenze delle lettere a..m
+	 */
+	public long getLowLetterCounts() {
+		return lowLetterCounts;
+	}
+
+	/**
+	 * Metodo che restituisce le occorrenze delle lettere n..z, impacchettate in 4 bit per lettera
+	 * @return occorrenze delle lettere n..z
+	 */
+	public long getHighLetterCounts() {
+		return highLetterCounts;
+	}
+
+	/**
+	 * Metodo che restituisce la maschera delle lettere presenti nella parola segreta
+	 * @return maschera in cui il bit i è attivo se la lettera 'a' + i è presente
+	 */
+	public int getLetterMask() {
+		return letterMask;
+	}
+
+	/**
+	 * Metodo che restituisce il momento del prossimo aggiornamento della parola segreta
+	 * @return il prossimo momento di aggiornamento della parola segreta
+	 */
+	public long getNextWordChangeTime() {
+		return nextWordChangeTime;
+	}
+}
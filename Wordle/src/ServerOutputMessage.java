@@ -7,6 +7,7 @@ public class ServerOutputMessage {
 	public static final String jsonErrorMessage = "Il file di backup non è strutturato correttamente";
 	public static final String configErrorMessage = "Il file di configurazione del Server non esiste";
 	public static final String ConnectionError = "Il client si è disconnesso";
+	public static final String RequestErrorMessage = "Richiesta del client non valida, la connessione è stata chiusa";
 	public static final String TerminationMessage = "Il sistema è stato terminato correttamente";
 	public static final String InterrputedExceptionMessage = "Il thread è stato interrotto";
 	public static final String ServerListening = "Il server è in ascolto sulla porta %d\n";
@@ -14,5 +15,27 @@ public class ServerOutputMessage {
 	
 	public static final String PortErrorMessage = "La porta deve essere un numero compreso tra 1024 e 65535";
 	public static final String WordLifeTimeErrorMessage = "Il life time della parola deve essere un numero maggiore o uguale a 60000";
+	public static final String SessionModeErrorMessage = "La modalità di gestione delle sessioni deve essere \"thread\", \"virtual\" oppure \"reactor\"";
+	public static final String BackupFormatErrorMessage = "Il formato del backup deve essere \"json\", \"compact\" oppure \"binary\"";
+	public static final String ShareTransportErrorMessage = "Il trasporto delle condivisioni deve essere \"multicast\", \"tcp\" oppure \"both\"";
+	public static final String ConverterUsageMessage = "Utilizzo: java BackupConverterMain json|compact|binary fileDiPartenza fileDiDestinazione fileDelDizionario";
+	public static final String LoadTestUsageMessage = "Utilizzo: java LoadTestMain numeroDiSessioni";
+	public static final String LoadTestBeforeMessage = "Prima dell'apertura delle sessioni (%d sessioni):\n";
+	public static final String LoadTestAfterMessage = "Dopo l'apertura delle sessioni (%d sessioni):\n";
+	public static final String LoadTestMemoryMessage = "Processo del server, RSS: %d KB, thread: %d\n";
+	public static final String LoadTestServerErrorMessage = "Non è stato possibile avviare il server";
+	public static final String LoadTestLoginErrorMessage = "L'accesso dell'utente %s non è riuscito\n";
+	public static final String ScorerCheckUsageMessage = "Utilizzo: java WordScorerCheckMain fileDelDizionario [passo]";
+	public static final String ScorerCheckErrorMessage = "Risultato diverso per la parola segreta %s e la parola %s: atteso %s, ottenuto %s\n";
+	public static final String ScorerCheckSuccessMessage = "WordScorer coincide con l'implementazione originale su %d coppie di parole\n";
+	public static final String BinaryBackupErrorMessage = "Il file di backup binario non è strutturato correttamente";
+	public static final String BinaryBackupVocabularyErrorMessage = "Il file di backup binario è stato scritto con un dizionario diverso";
+	public static final String VirtualThreadUnavailableMessage = "I virtual thread non sono supportati da questa JVM, le sessioni verranno eseguite nel ThreadPool";
+	public static final String LogWriteErrorMessage = "Si è verificato un errore nella scrittura del log delle modifiche";
+	public static final String LogTruncatedMessage = "Il log delle modifiche termina con un record incompleto, che è stato scartato";
+	public static final String WordChangeErrorMessage = "Si è verificato un errore nel cambio della parola segreta, verrà riprovato";
+	public static final String LogCorruptedMessage = "Il segmento %s del log delle modifiche è danneggiato ma non è l'ultimo: i segmenti successivi non possono essere riapplicati\n";
+	public static final String LogFullMessage = "Il log delle modifiche è pieno perché la scrittura non riesce: le nuove modifiche vengono rifiutate";
+	public static final String LogRecoveryErrorMessage = "Si è verificato un errore nel ripristino del log delle modifiche";
 	public static final String MulticastSocketErrorMessage = "Si è verificato un errore nell'apertura del socket multicast";
 }
@@ -7,4 +7,5 @@ public class ServerResponse {
 	public static final int SUCCESS = 10;
 	public static final int FAILURE = 11;
 	public static final int WORD_CHANGED = 12;
+	public static final int SHARES = 13; // messaggi condivisi inviati dal server senza una richiesta
 }
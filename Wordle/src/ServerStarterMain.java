@@ -21,7 +21,12 @@ public class ServerStarterMain {
 
 		server.shutdown();
 
-		while (serverThread.isAlive()) ;
+		try {
+			serverThread.join();
+		} catch (InterruptedException e) {
+			System.out.println(ServerOutputMessage.InterrputedExceptionMessage);
+		}
+
 		System.out.println("System termineted");
 	}
 }
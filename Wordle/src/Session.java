@@ -1,17 +1,18 @@
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.net.DatagramPacket;
-import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Classe che rappresenta una sessione di gioco
- * implementa Runnable per poter essere eseguita in un thread
+ * implementa Runnable per poter essere eseguita in un thread, oppure può essere gestita
+ * come macchina a stati dal Selector del server (modalità reactor)
  * 
  * @author Lorenzo Deriu
  */
@@ -20,252 +21,608 @@ public class Session implements Runnable {
 	private User user;
 	private WordleData data;
 
-	private Boolean wordChanged;
+	private WordEpoch wordEpoch;
+	private long seenEpoch;
 
-	private MulticastSocket multicastSocket;
-	private InetSocketAddress multicastGroup;
+	private ShareDispatcher shareDispatcher;
+	private ShareFanout shareFanout;
+
+	private ArrayBlockingQueue<ByteBuffer> shareQueue; // frame SHARES accodati da ShareFanout, null se la sessione non è iscritta
+	private ArrayDeque<ByteBuffer> pendingShares; // frame presi dalla coda e non ancora scritti completamente
+	private ByteBuffer[] writeSet; // buffer passati alla scrittura, risposte e frame SHARES
+	private Boolean outputFirst = false; // true se una risposta è stata scritta solo in parte e va completata prima dei frame SHARES
+	
+	private FrameCodec codec;
+	private ByteBuffer output;
+	private SelectionKey key;
+	private int state;
+	private final AtomicBoolean closed = new AtomicBoolean(false); // true dopo la prima chiamata a close(), che è l'unica a restituire i buffer
 	
-	private final String WINNING_RESULT = "++++++++++";
+	private static final int READING_REQUEST = 0;
+	private static final int WAITING_NEXT_WORD = 1;
+	private static final int CLOSED = 2;
+
+	private static final int SHARE_QUEUE_CAPACITY = 64; // frame SHARES in attesa oltre i quali quelli nuovi vengono scartati
 
 	/**
 	 * Costruttore della classe Session
 	 * 
 	 * @param connection SocketChannel di connessione
+	 * @param codec FrameCodec della connessione, può contenere richieste già ricevute insieme al login
 	 * @param data Oggetto WordleData contenente dati come: dizionario, lista di utenti, parola segreta, e successivo aggiornamento della parola
 	 * @param user Oggetto User, rappresenta i dati dell'utente che ha effettuato la connessione
-	 * @param multicastSocket Socket per la multicast
-	 * @param multicastGroup Gruppo di multicast
+	 * @param wordEpoch Epoca della parola segreta, avanza a ogni cambio di parola
+	 * @param shareDispatcher Thread di invio dei messaggi condivisi sul gruppo multicast
+	 * @param shareFanout Invio dei messaggi condivisi sulle connessioni TCP, null se non abilitato
 	 */
-	public Session(SocketChannel connection, WordleData data, User user, MulticastSocket multicastSocket, InetSocketAddress multicastGroup) {
+	public Session(SocketChannel connection, FrameCodec codec, WordleData data, User user, WordEpoch wordEpoch, ShareDispatcher shareDispatcher, ShareFanout shareFanout) {
 		this.connection = connection;
+		this.codec = codec;
 		this.data = data;
 		this.user = user;
-		this.wordChanged = false;
-		this.multicastSocket = multicastSocket;
-		this.multicastGroup = multicastGroup;
+		this.wordEpoch = wordEpoch;
+		this.seenEpoch = wordEpoch.current();
+		this.shareDispatcher = shareDispatcher;
+		this.shareFanout = shareFanout;
+		this.output = FrameCodec.acquireBuffer();
+		this.state = READING_REQUEST;
 	}
 
 	/**
-	 * Implementazione del metodo run() di Runnable
+	 * Implementazione del metodo run() di Runnable, utilizzata quando la sessione viene eseguita in un thread dedicato
 	 */
 	public void run() {
-		ByteBuffer buffer = ByteBuffer.allocate(1024);
-
-		Boolean done = false;
-		
-		while (!done) {
+		while (state != CLOSED) {
 			try {
-				int request = receiveCode(buffer, connection);
-
-				switch(request) {
-					case ClientRequest.PLAY:
-					if (wordChanged) {
-						sendCode(ServerResponse.WORD_CHANGED, buffer, connection);
-						wordChanged = false;
-					} else handlePlay(buffer);
-					break;
-
-					case ClientRequest.LOGOUT:
-					done = true;
-					break;
-
-					case ClientRequest.SHARE:
-					GameRecord lastGameRecord = user.getLastGameRecord();
-					String packetContent = messageComposer(user, lastGameRecord);
-					
-					DatagramPacket datagramPacket = new DatagramPacket(packetContent.getBytes(StandardCharsets.UTF_8), packetContent.length(), multicastGroup);
-					multicastSocket.send(datagramPacket);
-
-					data.addNotification(packetContent);
-					break;
-
-					case ClientRequest.SEND_STATISTICS:
-					ObjectOutputStream objectOutputStream = new ObjectOutputStream(connection.socket().getOutputStream());
-					objectOutputStream.writeObject(new GameHistory(user.getGameRecord()));
-					break;
-
-					case ClientRequest.WAITING_NEXT_WORD:
-					while (!wordChanged) ;
-					sendCode(ServerResponse.WORD_CHANGED, buffer, connection);
-					wordChanged = false;
-					break;
+				ByteBuffer frame = codec.readFrame(connection);
+				int request = frame.getInt();
+
+				if (request == ClientRequest.WAITING_NEXT_WORD) {
+					seenEpoch = wordEpoch.awaitChange(seenEpoch);
+					appendWordChanged();
+				} else {
+					handleRequest(request, frame);
 				}
+
+				writeResponses();
 			} catch (BufferUnderflowException | IOException e) {
 				System.out.println(ServerOutputMessage.ConnectionError);
-				done = true;
+				state = CLOSED;
+			} catch (RuntimeException e) {
+				System.out.println(ServerOutputMessage.RequestErrorMessage);
+				state = CLOSED;
+			} catch (InterruptedException e) { // il server è in chiusura
+				state = CLOSED;
 			}
 		}
 
-		try { this.connection.close(); } 
-		catch (IOException e) { e.printStackTrace(); }
+		close();
 	}
 
 	/**
-	 * Metodo che invia il codice di risposta al client
-	 * @param code Codice di risposta
-	 * @param buffer Buffer di scrittura
-	 * @param connection SocketChannel a cui inviare il codice
+	 * Metodo che associa la sessione alla SelectionKey del client, in modo che le richieste vengano
+	 * gestite dal Selector del server senza un thread dedicato (modalità reactor)
+	 * @param key SelectionKey del client che ha effettuato il login
 	 * @throws IOException
 	 */
-	private static void sendCode(int code, ByteBuffer buffer, SocketChannel connection) throws IOException {
-		buffer.clear();
-		buffer.putInt(code);
-		buffer.flip();
+	public void bind(SelectionKey key) throws IOException {
+		this.key = key;
 
-		connection.write(buffer);
+		key.attach(this);
+		
+		processFrames();
+		flush();
 	}
 
 	/**
-	 * Metodo che riceve il codice di richiesta dal client
-	 * @param buffer Buffer di lettura
-	 * @param connection SocketChannel da cui ricevere il codice
-	 * @return Codice di risposta
+	 * Metodo invocato dal Selector quando il client ha inviato dei dati (modalità reactor).
+	 * Vengono elaborate tutte le richieste complete ricevute e le risposte vengono inviate insieme
 	 * @throws IOException
 	 */
-	private static int receiveCode(ByteBuffer buffer, SocketChannel connection) throws IOException {
-		buffer.clear();
-		connection.read(buffer);
-		buffer.flip();
+	public void handleRead() throws IOException {
+		if (codec.read(connection) == -1) {
+			close();
+			return;
+		}
+		
+		processFrames();
+		flush();
+	}
+
+	/**
+	 * Metodo invocato dal Selector quando è possibile continuare a scrivere le risposte rimaste in sospeso (modalità reactor)
+	 * @throws IOException
+	 */
+	public void handleWrite() throws IOException {
+		flush();
+	}
+
+	/**
+	 * Metodo che elabora le richieste complete ricevute dal client (modalità reactor). 
+	 * La richiesta WAITING_NEXT_WORD non produce una risposta immediata: le richieste successive 
+	 * restano in attesa finché la parola segreta non viene cambiata
+	 * @throws IOException
+	 */
+	private void processFrames() throws IOException {
+		ByteBuffer frame;
+
+		while (state == READING_REQUEST && (frame = codec.nextFrame()) != null) {
+			int request = frame.getInt();
 
-		int responseCode = buffer.getInt();
+			if (request != ClientRequest.WAITING_NEXT_WORD) {
+				handleRequest(request, frame);
+			} else if (wordChanged()) {
+				appendWordChanged();
+			} else {
+				state = WAITING_NEXT_WORD;
+			}
+		}
 
-		return responseCode;
+		if (state == CLOSED) {
+			close();
+		}
 	}
 
 	/**
-	 * Metodo che si occupa di comporre il messaggio da inviare tramite multicast a tutti gli utenti
-	 * @param user Utente che vuole inviare il messaggio
-	 * @param record ultima partita giocata
-	 * @return
+	 * Metodo che scrive le risposte accodate e i frame SHARES ricevuti, bloccandosi finché non sono stati scritti completamente.
+	 * Utilizzato quando la sessione viene eseguita in un thread dedicato: i messaggi condivisi vengono consegnati insieme alla risposta successiva
+	 * @throws IOException
 	 */
-	private static String messageComposer(User user, GameRecord record) {
-		String message = ""; 
-		message += user.getUsername() +  " ha indovinato \"";
-		message += record.getWordToGuess() + "\"" + " in " + record.getAttemptsCount() + " tentativi";
+	private void writeResponses() throws IOException {
+		output.flip();
+
+		if (shareQueue == null) {
+			FrameCodec.writeFully(output, connection);
+		} else {
+			int count = gatherWrites();
 
-		return message;
+			do {
+				connection.write(writeSet, 0, count);
+			} while (writeSet[count - 1].hasRemaining()); // la scrittura procede in ordine, l'ultimo buffer è vuoto solo alla fine
+
+			pendingShares.clear();
+		}
+
+		output.clear();
 	}
 
 	/**
-	 * Metodo che gestisce la richiesta di indovinare la parola dell'utente
-	 * @param buffer Buffer di lettura
+	 * Metodo che scrive le risposte in sospeso senza bloccarsi, se non vengono scritte completamente
+	 * la sessione smette di leggere nuove richieste finché il canale non è di nuovo scrivibile.
+	 * Se la sessione è iscritta ai messaggi condivisi, i frame SHARES vengono scritti con la stessa operazione
 	 * @throws IOException
 	 */
-	private void handlePlay(ByteBuffer buffer) throws IOException {		
-		if (user.getAttempt() >= 12 || user.wordGuessed()) {
-			buffer.clear();
-			buffer.putInt(ServerResponse.FAILURE);
-			buffer.putLong(data.getNextWordChangeTime());
-			buffer.flip();
-			
-			connection.write(buffer);
-			return;
+	private void flush() throws IOException {
+		if (state == CLOSED) return;
+
+		output.flip();
+
+		if (shareQueue == null) {
+			connection.write(output);
+		} else {
+			connection.write(writeSet, 0, gatherWrites());
+
+			outputFirst = (outputFirst || output.position() > 0) && output.hasRemaining();
+			while (!pendingShares.isEmpty() && !pendingShares.peek().hasRemaining()) pendingShares.poll();
 		}
-		
-		byte[] byteArray = new byte[10];
-		
-		buffer.get(byteArray);
-		buffer.clear();
-		
-		String word = new String(byteArray);
-		String result = compareWithSecreteWord(word);
 
-		buffer.putInt(ServerResponse.SUCCESS);
-		buffer.put(result.getBytes());
-		
-		if (result.equals(WINNING_RESULT)) {
-			user.guessed();
-			buffer.putLong(data.getNextWordChangeTime());
+		output.compact();
+
+		if (output.position() > 0 || (pendingShares != null && !pendingShares.isEmpty())) {
+			key.interestOps(SelectionKey.OP_WRITE);
+		} else {
+			key.interestOps(state == WAITING_NEXT_WORD ? 0 : SelectionKey.OP_READ);
 		}
-		
-		buffer.flip();
-		this.connection.write(buffer);
-		
+	}
 
-		user.newAttempt();
+	/**
+	 * Metodo che prepara i buffer da scrivere con una sola operazione: i frame SHARES presi dalla coda precedono le risposte,
+	 * a meno che una risposta non sia già stata scritta in parte. Un frame non viene mai interrotto da un altro
+	 * @return numero di buffer in writeSet
+	 */
+	private int gatherWrites() {
+		shareQueue.drainTo(pendingShares, SHARE_QUEUE_CAPACITY - pendingShares.size());
 
-		if (user.getAttempt() == 12 || user.wordGuessed()) {
-			user.updateStats(data.getCurrentSecreteWord());
+		int count = 0;
+
+		if (outputFirst) writeSet[count++] = output;
+
+		for (ByteBuffer frame : pendingShares) {
+			writeSet[count++] = frame;
+		}
+
+		if (!outputFirst) writeSet[count++] = output;
+
+		return count;
+	}
+
+	/**
+	 * Metodo che iscrive la sessione ai messaggi condivisi inviati sulle connessioni TCP
+	 */
+	private void subscribeShares() {
+		if (shareQueue != null) return;
+
+		shareQueue = new ArrayBlockingQueue<>(SHARE_QUEUE_CAPACITY);
+		pendingShares = new ArrayDeque<>(SHARE_QUEUE_CAPACITY);
+		writeSet = new ByteBuffer[SHARE_QUEUE_CAPACITY + 1];
+
+		shareFanout.subscribe(this);
+	}
+
+	/**
+	 * Metodo che accoda un frame SHARES da inviare al client, eseguito dal thread di ShareDispatcher.
+	 * Se il client non riceve abbastanza velocemente e la coda è piena, il frame viene scartato
+	 * @param frame frame SHARES pronto per la lettura, condiviso in sola lettura con le altre sessioni
+	 */
+	public void offerShares(ByteBuffer frame) {
+		ArrayBlockingQueue<ByteBuffer> queue = shareQueue;
+
+		if (queue != null) queue.offer(frame);
+	}
+
+	/**
+	 * Metodo eseguito dal thread del Selector dopo che sono stati accodati nuovi frame SHARES (modalità reactor).
+	 * Se la sessione sta già aspettando che il canale sia scrivibile, i frame verranno scritti da handleWrite()
+	 */
+	public void deliverShares() {
+		if (key == null || state == CLOSED || shareQueue == null || shareQueue.isEmpty()) return;
+
+		if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) return;
+
+		try { flush(); }
+		catch (IOException e) {
+			System.out.println(ServerOutputMessage.ConnectionError);
+			close();
+		} catch (RuntimeException e) {
+			System.out.println(ServerOutputMessage.RequestErrorMessage);
+			close();
 		}
 	}
 
 	/**
-	 * Metodo che confronta la parola inserita dall'utente con la parola segreta
-	 * @param word Parola inserita dall'utente
-	 * @return Stringa contenente i risultati del confronto, condificata nel seguente modo:
-	 * "+" -> la lettera è presente nella parola segreta nella giusta posizione,
-	 * "-" -> la lettera è presente nella parola segreta ma in una posizione diversa,
-	 * "X" -> la lettera non è presente nella parola segreta
+	 * Metodo che chiude la connessione della sessione, la rimuove dal Selector e restituisce i buffer al pool.
+	 * Può essere chiamato contemporaneamente dal thread della sessione e dalla chiusura del server:
+	 * solo la prima chiamata esegue la chiusura, così i buffer non vengono restituiti due volte
 	 */
-	private String compareWithSecreteWord(String word) {
-		String secreteWord = data.getSecreteWord();
-		HashMap<String,Integer> occurrence = new HashMap<String,Integer>();
+	public void close() {
+		if (!closed.compareAndSet(false, true)) return;
+
+		state = CLOSED;
+
+		if (key != null) key.cancel();
+		if (shareQueue != null) shareFanout.unsubscribe(this);
+
+		try { this.connection.close(); } 
+		catch (IOException e) { e.printStackTrace(); }
+
+		if (output != null) {
+			FrameCodec.releaseBuffer(output);
+			codec.release();
+			output = null;
+		}
+	}
+
+	/**
+	 * Metodo che restituisce true se la sessione è terminata
+	 * @return true se la sessione è terminata, false altrimenti
+	 */
+	public Boolean isClosed() {
+		return state == CLOSED;
+	}
+
+	/**
+	 * Metodo che elabora una richiesta del client e accoda la risposta nel buffer di uscita
+	 * @param request Codice della richiesta
+	 * @param frame Buffer contenente il resto della richiesta
+	 * @throws IOException
+	 */
+	private void handleRequest(int request, ByteBuffer frame) throws IOException {
+		switch(request) {
+			case ClientRequest.PLAY:
+			if (wordChanged()) {
+				appendWordChanged();
+			} else {
+				handlePlay(frame);
+			}
+			break;
+
+			case ClientRequest.PLAY_BATCH:
+			if (wordChanged()) {
+				appendWordChanged();
+			} else {
+				handlePlayBatch(frame);
+			}
+			break;
 
-		for (int i = 0; i < secreteWord.length(); i++) {
-			String letter = secreteWord.charAt(i) + "";
+			case ClientRequest.LOGOUT:
+			state = CLOSED;
+			break;
 
-			if (occurrence.containsKey(letter)) {
-				occurrence.compute(letter, (k, v) -> v + 1);
+			case ClientRequest.SHARE:
+			if (user.getHistory().size() == 0) { // nessuna partita conclusa da condividere
+				appendCode(ServerResponse.FAILURE);
+				break;
+			}
+
+			GameRecord lastGameRecord = user.getLastGameRecord();
+			String word = lastGameRecord.getWordToGuess();
+			ShareMessage shareMessage = new ShareMessage(user.getUsername(), WordTable.vocabularyIndexOf(word), lastGameRecord.getAttemptsCount(), lastGameRecord.guessed(), (int) wordEpoch.current());
+			
+			shareDispatcher.share(shareMessage);
+			data.addNotification(shareMessage.render(word));
+			appendCode(ServerResponse.SUCCESS);
+			break;
+
+			case ClientRequest.SEND_STATISTICS:
+			PackedGameHistory history = user.getHistory();
+
+			int offset = 0;
+			int limit = GameHistory.PAGE_SIZE;
+
+			if (frame.remaining() >= 8) {
+				offset = Math.max(0, Math.min(frame.getInt(), history.size()));
+				limit = Math.max(0, Math.min(frame.getInt(), GameHistory.PAGE_SIZE));
+			}
+
+			int count = Math.min(limit, history.size() - offset);
+			ensureCapacity(8 + GameHistory.maxPageSize(history, offset, count));
+
+			int frameStart = FrameCodec.beginFrame(output);
+			output.putInt(ServerResponse.SUCCESS);
+			GameHistory.writePage(output, history, offset, count);
+			FrameCodec.endFrame(output, frameStart);
+			break;
+
+			case ClientRequest.SEND_STATISTICS_SUMMARY:
+			ensureCapacity(8 + UserStatistics.BINARY_SIZE);
+
+			int summaryStart = FrameCodec.beginFrame(output);
+			output.putInt(ServerResponse.SUCCESS);
+			user.getStatistics().writeTo(output);
+			FrameCodec.endFrame(output, summaryStart);
+			break;
+
+			case ClientRequest.LEADERBOARD:
+			handleLeaderboard(frame);
+			break;
+
+			case ClientRequest.WORD_RESULTS:
+			handleWordResults(frame);
+			break;
+
+			case ClientRequest.SUBSCRIBE_SHARES:
+			if (shareFanout != null) {
+				subscribeShares();
+				appendCode(ServerResponse.SUCCESS);
 			} else {
-				occurrence.put(letter, 1);
+				appendCode(ServerResponse.FAILURE);
 			}
+			break;
+
+			case ClientRequest.POLL_SHARES: // i frame SHARES in attesa vengono scritti prima della risposta
+			appendCode(ServerResponse.SUCCESS);
+			break;
 		}
+	}
 
-		String result = "XXXXXXXXXX";
+	/**
+	 * Metodo che controlla se la parola segreta è cambiata dall'ultima risposta WORD_CHANGED inviata
+	 * @return true se l'epoca della parola è avanzata, false altrimenti
+	 */
+	private Boolean wordChanged() {
+		return wordEpoch.current() != seenEpoch;
+	}
 
-		result = markCorrectPositions(secreteWord, word, occurrence, result);
-		result = markCorrectLetters(secreteWord, word, occurrence, result);
+	/**
+	 * Metodo che accoda la risposta WORD_CHANGED per un client in attesa della nuova parola
+	 */
+	private void appendWordChanged() {
+		seenEpoch = wordEpoch.current();
 
-		return result;
+		appendCode(ServerResponse.WORD_CHANGED);
 	}
 
 	/**
-	 * Metodo che marca le lettere inserite dall'utente se sono presenti nella parola segreta nella giusta posizione
-	 * @param secreteWord Parola segreta
-	 * @param word Parola inserita dall'utente
-	 * @param occurrence Mappa che contiene le occorrenze delle lettere nella parola segreta
-	 * @param result Stringa contenente i risultati del confronto fin'ora ottenuti
-	 * @return Stringa contenente i risultati del confronto
+	 * Metodo che accoda nel buffer di uscita una risposta composta dal solo codice
+	 * @param code codice ServerResponse da inviare
 	 */
-	private String markCorrectPositions(String secreteWord, String word, HashMap<String,Integer> occurrence, String result) {
-		for (int i = 0; i < secreteWord.length(); i++) {
-			if (secreteWord.charAt(i) == word.charAt(i)) {
-				result = result.substring(0, i) + "+" + result.substring(i + 1);
-				
-				String c = word.charAt(i) + "";
-				occurrence.compute(c, (key, value) -> value = value - 1);
-			}
+	private void appendCode(int code) {
+		ensureCapacity(8);
+
+		int frameStart = FrameCodec.beginFrame(output);
+		output.putInt(code);
+		FrameCodec.endFrame(output, frameStart);
+	}
+
+	/**
+	 * Metodo che si assicura che nel buffer di uscita ci sia spazio per altri byteCount byte, 
+	 * se necessario il buffer viene sostituito da uno più grande che mantiene le risposte già accodate
+	 * @param byteCount numero di byte da scrivere
+	 */
+	private void ensureCapacity(int byteCount) {
+		if (output.remaining() >= byteCount) return;
+
+		ByteBuffer larger = ByteBuffer.allocate(output.position() + byteCount);
+		output.flip();
+		larger.put(output);
+
+		FrameCodec.releaseBuffer(output);
+		output = larger;
+	}
+
+	/**
+	 * Metodo che gestisce la richiesta della classifica e accoda la risposta nel buffer di uscita.
+	 * La risposta contiene il numero di utenti in classifica, la posizione dell'utente (rank 0 se non ha ancora concluso una partita),
+	 * il numero di posizioni inviate e le prime posizioni della classifica
+	 * @param frame Buffer contenente il numero di posizioni richieste
+	 */
+	private void handleLeaderboard(ByteBuffer frame) {
+		Leaderboard leaderboard = data.getLeaderboard();
+
+		int count = Math.max(0, Math.min(frame.remaining() >= 4 ? frame.getInt() : 10, Leaderboard.MAX_TOP));
+		ArrayList<Leaderboard.Entry> top = leaderboard.top(count);
+
+		Leaderboard.Entry userEntry = leaderboard.entryOf(user.getUsername());
+		if (userEntry == null) userEntry = new Leaderboard.Entry(0, user.getUsername(), 0, 0);
+
+		int size = 16 + userEntry.maxBinarySize();
+		for (Leaderboard.Entry entry : top) size += entry.maxBinarySize();
+
+		ensureCapacity(size);
+		int frameStart = FrameCodec.beginFrame(output);
+
+		output.putInt(ServerResponse.SUCCESS);
+		output.putInt(leaderboard.size());
+		userEntry.writeTo(output);
+		output.putInt(top.size());
+
+		for (Leaderboard.Entry entry : top) {
+			entry.writeTo(output);
 		}
 
-		return result;
+		FrameCodec.endFrame(output, frameStart);
 	}
 
 	/**
-	 * Metodo che marca le lettere inserite dall'utente se sono presenti nella parola segreta ma in una posizione diversa
-	 * @param secreteWord Parola segreta
-	 * @param word Parola inserita dall'utente
-	 * @param occurrence Mappa che contiene le occorrenze delle lettere nella parola segreta
-	 * @param result Stringa contenente i risultati del confronto fin'ora ottenuti
-	 * @return Stringa contenente i risultati del confronto
+	 * Metodo che gestisce la richiesta dei risultati di tutti gli utenti su una parola e accoda la risposta nel buffer di uscita.
+	 * Se la richiesta non contiene una parola viene inviata la distribuzione aggiornata della parola attuale,
+	 * altrimenti quella archiviata della parola indicata, oppure FAILURE se sulla parola non sono state concluse partite
+	 * @param frame Buffer contenente la lunghezza e i byte della parola passata, oppure vuoto
 	 */
-	private String markCorrectLetters(String secreteWord, String word, HashMap<String,Integer> occurrence, String result) {
-		for (int i = 0; i < secreteWord.length(); i++) {
-			String c = "" + word.charAt(i);
+	private void handleWordResults(ByteBuffer frame) {
+		int[] counts;
 
-			if (occurrence.containsKey(c) && occurrence.get(c) > 0 && result.charAt(i) == 'X') {
-				result = result.substring(0, i) + "?" + result.substring(i + 1);
-				occurrence.compute(c, (key, value) -> value = value - 1);
-			}
+		if (frame.remaining() >= 4) {
+			byte[] word = new byte[Math.max(0, Math.min(frame.getInt(), frame.remaining()))];
+			frame.get(word);
+
+			counts = data.getWordResults().archivedCounts(new String(word, StandardCharsets.UTF_8));
+		} else {
+			counts = data.getWordResults().currentCounts();
+		}
+
+		ensureCapacity(8 + WordHistogram.BINARY_SIZE);
+		int frameStart = FrameCodec.beginFrame(output);
+
+		if (counts == null) {
+			output.putInt(ServerResponse.FAILURE);
+		} else {
+			output.putInt(ServerResponse.SUCCESS);
+			WordHistogram.writeCounts(output, counts);
+		}
+
+		FrameCodec.endFrame(output, frameStart);
+	}
+
+	/**
+	 * Metodo che gestisce la richiesta di indovinare la parola dell'utente e accoda la risposta nel buffer di uscita
+	 * @param frame Buffer contenente la parola inviata dall'utente
+	 */
+	private void handlePlay(ByteBuffer frame) {
+		SecretProfile secret = data.getSecretProfile();
+
+		ensureCapacity(32);
+		int frameStart = FrameCodec.beginFrame(output);
+
+		if (user.getAttempt() >= 12 || user.wordGuessed()) {
+			output.putInt(ServerResponse.FAILURE);
+			output.putLong(secret.getNextWordChangeTime());
+			FrameCodec.endFrame(output, frameStart);
+			
+			return;
+		}
+
+		output.putInt(ServerResponse.SUCCESS);
+		
+		if (playGuess(frame, secret)) {
+			output.putLong(secret.getNextWordChangeTime());
+		}
+		
+		FrameCodec.endFrame(output, frameStart);
+	}
+
+	/**
+	 * Metodo che gestisce la richiesta di indovinare più parole con una sola richiesta.
+	 * Le parole vengono confrontate nell'ordine in cui sono state inviate, fermandosi alla parola indovinata
+	 * o al raggiungimento dei 12 tentativi. La risposta contiene il numero di risultati seguito dai risultati
+	 * e, se la parola è stata indovinata, dal prossimo momento di aggiornamento della parola
+	 * @param frame Buffer contenente il numero di parole e le parole inviate dall'utente
+	 */
+	private void handlePlayBatch(ByteBuffer frame) {
+		if (user.getAttempt() >= 12 || user.wordGuessed()) {
+			handlePlay(frame);
+			return;
+		}
+
+		SecretProfile secret = data.getSecretProfile();
+		int wordCount = Math.min(frame.getInt(), frame.remaining() / 10);
+		
+		ensureCapacity(24 + 10 * Math.min(wordCount, 12));
+		int frameStart = FrameCodec.beginFrame(output);
+
+		output.putInt(ServerResponse.SUCCESS);
+		int countPosition = output.position();
+		output.putInt(0);
+
+		int resultCount = 0;
+		Boolean guessed = false;
+
+		while (resultCount < wordCount && user.getAttempt() < 12 && !guessed) {
+			guessed = playGuess(frame, secret);
+			resultCount++;
+		}
+
+		output.putInt(countPosition, resultCount);
+
+		if (guessed) {
+			output.putLong(secret.getNextWordChangeTime());
 		}
 
-		return result;
+		FrameCodec.endFrame(output, frameStart);
 	}
 
 	/**
-	 * Metodo che comunica l'aggiornamento della parola segreta
-	 * modifica il flag wordChanged a true
+	 * Metodo che confronta la prossima parola contenuta nella richiesta con la parola segreta, 
+	 * scrive il risultato nel buffer di uscita e aggiorna i tentativi dell'utente
+	 * @param frame Buffer contenente la parola inviata dall'utente
+	 * @param secret Profilo della parola segreta
+	 * @return true se la parola è stata indovinata, false altrimenti
+	 */
+	private Boolean playGuess(ByteBuffer frame, SecretProfile secret) {
+		if (WordScorer.score(secret, frame, output)) {
+			user.guessed();
+		}
+
+		user.newAttempt();
+
+		if (user.getAttempt() == 12 || user.wordGuessed()) {
+			data.addGameRecord(user, secret.getWord());
+			data.getWordResults().record(secret.getWord(), user.getAttempt(), user.wordGuessed());
+		}
+
+		return user.wordGuessed();
+	}
+
+	/**
+	 * Metodo che comunica l'aggiornamento della parola segreta, già registrato nell'epoca.
+	 * Le sessioni eseguite in un thread vengono risvegliate dall'epoca stessa, 
+	 * se invece la sessione è gestita dal Selector ed era in attesa della nuova parola viene inviata subito la risposta WORD_CHANGED
 	 */
 	public void wordIsChanged() {
-		wordChanged = true;
+		if (key != null && state == WAITING_NEXT_WORD) {
+			state = READING_REQUEST;
+			appendWordChanged();
+
+			try { 
+				processFrames();
+				flush();
+			} catch (BufferUnderflowException | IOException e) {
+				System.out.println(ServerOutputMessage.ConnectionError);
+				close();
+			} catch (RuntimeException e) {
+				System.out.println(ServerOutputMessage.RequestErrorMessage);
+				close();
+			}
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Classe che invia al gruppo multicast i messaggi condivisi dagli utenti, utilizzando un thread dedicato.
+ * Le sessioni accodano i messaggi senza bloccarsi su una coda condivisa da più produttori, il thread di invio
+ * li raccoglie in un unico datagramma finché questo non raggiunge MAX_DATAGRAM_SIZE byte oppure finché non
+ * sono passati FLUSH_DELAY millisecondi dal primo messaggio del datagramma.
+ * Il formato del datagramma è descritto in ShareMessage; lo stesso contenuto viene passato a ShareFanout
+ * per l'invio sulle connessioni TCP, se abilitato
+ *
+ * @author Lorenzo Deriu
+ */
+public class ShareDispatcher implements Runnable {
+	public static final int MAX_DATAGRAM_SIZE = 1400; // entro la MTU di Ethernet, tolti gli header IP e UDP
+	private static final long FLUSH_DELAY = TimeUnit.MILLISECONDS.toNanos(5);
+
+	private final MulticastSocket multicastSocket;
+	private final InetSocketAddress multicastGroup;
+	private final ShareFanout shareFanout;
+
+	private final int vocabularyFingerprint;
+
+	private final ConcurrentLinkedQueue<ShareMessage> queue;
+	private final Thread sender;
+
+	private volatile boolean waiting; // true mentre il thread di invio è sospeso in attesa di messaggi
+	private volatile boolean closed;
+
+	/**
+	 * Costruttore della classe, avvia il thread di invio
+	 * @param multicastSocket socket per la multicast, se null i messaggi non vengono inviati al gruppo multicast
+	 * @param multicastGroup gruppo di multicast
+	 * @param vocabularyFingerprint impronta del dizionario, inviata in ogni datagramma
+	 * @param shareFanout invio sulle connessioni TCP, null se non abilitato
+	 */
+	public ShareDispatcher(MulticastSocket multicastSocket, InetSocketAddress multicastGroup, int vocabularyFingerprint, ShareFanout shareFanout) {
+		this.multicastSocket = multicastSocket;
+		this.multicastGroup = multicastGroup;
+		this.shareFanout = shareFanout;
+		this.vocabularyFingerprint = vocabularyFingerprint;
+		this.queue = new ConcurrentLinkedQueue<>();
+
+		this.sender = new Thread(this, "share-dispatcher");
+		this.sender.setDaemon(true);
+		this.sender.start();
+	}
+
+	/**
+	 * Metodo che accoda un messaggio da inviare e ritorna subito
+	 * @param message messaggio da inviare
+	 */
+	public void share(ShareMessage message) {
+		queue.offer(message);
+
+		if (waiting) LockSupport.unpark(sender);
+	}
+
+	/**
+	 * Implementazione del metodo run() di Runnable, eseguita dal thread di invio
+	 */
+	public void run() {
+		ByteBuffer datagram = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+		DatagramPacket packet = new DatagramPacket(datagram.array(), 0);
+
+		if (multicastGroup != null) packet.setSocketAddress(multicastGroup);
+		long deadline = 0;
+
+		while (true) {
+			ShareMessage message = queue.poll();
+
+			if (message != null) {
+				if (datagram.remaining() < ShareMessage.MAX_SIZE) send(datagram, packet);
+
+				if (datagram.position() == 0) {
+					ShareMessage.writeHeader(datagram, vocabularyFingerprint);
+					deadline = System.nanoTime() + FLUSH_DELAY;
+				}
+
+				message.writeTo(datagram);
+				continue;
+			}
+
+			long delay = deadline - System.nanoTime();
+
+			if (datagram.position() > 0 && (delay <= 0 || closed)) {
+				send(datagram, packet);
+				continue;
+			}
+
+			if (closed) break;
+
+			waiting = true;
+
+			if (queue.isEmpty() && !closed) { // controllo ripetuto dopo waiting, per non perdere un unpark
+				if (datagram.position() > 0) {
+					LockSupport.parkNanos(this, delay);
+				} else {
+					LockSupport.park(this);
+				}
+			}
+
+			waiting = false;
+		}
+	}
+
+	/**
+	 * Metodo che invia i messaggi accodati, attendendo l'invio di quelli già ricevuti, e termina il thread di invio
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(sender);
+
+		try { sender.join(); }
+		catch (InterruptedException e) { System.out.println(ServerOutputMessage.InterrputedExceptionMessage); }
+	}
+
+	/**
+	 * Metodo che invia il datagramma con i messaggi raccolti e lo svuota
+	 * @param datagram buffer contenente i messaggi
+	 * @param packet pacchetto che condivide l'array del buffer
+	 */
+	private void send(ByteBuffer datagram, DatagramPacket packet) {
+		if (multicastSocket != null) {
+			packet.setLength(datagram.position());
+
+			try { multicastSocket.send(packet); }
+			catch (IOException e) { System.out.println(ServerOutputMessage.MulticastSocketErrorMessage); }
+		}
+
+		if (shareFanout != null) {
+			datagram.flip();
+			shareFanout.publish(datagram);
+		}
+
+		datagram.clear();
+	}
+
+	/**
+	 * Metodo che sceglie l'interfaccia di rete su cui inviare e ricevere i messaggi del gruppo multicast:
+	 * lo0 se presente, altrimenti la prima interfaccia attiva che supporta la multicast, altrimenti quella di loopback
+	 * @return interfaccia di rete
+	 * @throws SocketException se non è possibile elencare le interfacce
+	 */
+	public static NetworkInterface multicastInterface() throws SocketException {
+		NetworkInterface networkInterface = NetworkInterface.getByName("lo0");
+
+		if (networkInterface != null) return networkInterface;
+
+		Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+
+		while (interfaces.hasMoreElements()) {
+			NetworkInterface candidate = interfaces.nextElement();
+
+			if (candidate.isUp() && candidate.supportsMulticast() && !candidate.isLoopback()) return candidate;
+		}
+
+		return NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+	}
+}
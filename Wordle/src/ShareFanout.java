@@ -0,0 +1,79 @@
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Classe che invia i messaggi condivisi agli utenti sulle loro connessioni TCP, in alternativa
+ * o in aggiunta al gruppo multicast, per le reti in cui la multicast non è disponibile.
+ * Il contenuto di ogni datagramma preparato da ShareDispatcher viene incapsulato una sola volta
+ * in un frame SHARES, e lo stesso frame (in sola lettura) viene accodato a tutte le sessioni iscritte:
+ * ogni sessione lo scrive dalla propria coda limitata, senza copiarlo.
+ * Le sessioni gestite dal Selector vengono svuotate dal thread del server, risvegliato da publish()
+ *
+ * @author Lorenzo Deriu
+ */
+public class ShareFanout {
+	private final Set<Session> subscribers;
+	private final Runnable wakeup; // risveglia il Selector del server
+
+	private final AtomicBoolean pendingDelivery; // true se ci sono frame accodati da consegnare alle sessioni del Selector
+
+	/**
+	 * Costruttore della classe
+	 * @param wakeup operazione che risveglia il thread del Selector dopo che sono stati accodati nuovi frame
+	 */
+	public ShareFanout(Runnable wakeup) {
+		this.subscribers = ConcurrentHashMap.newKeySet();
+		this.wakeup = wakeup;
+		this.pendingDelivery = new AtomicBoolean(false);
+	}
+
+	/**
+	 * Metodo che iscrive una sessione alla ricezione dei messaggi condivisi
+	 * @param session sessione da iscrivere
+	 */
+	public void subscribe(Session session) {
+		subscribers.add(session);
+	}
+
+	/**
+	 * Metodo che annulla l'iscrizione di una sessione
+	 * @param session sessione da rimuovere
+	 */
+	public void unsubscribe(Session session) {
+		subscribers.remove(session);
+	}
+
+	/**
+	 * Metodo che accoda a tutte le sessioni iscritte un frame SHARES con i messaggi indicati, eseguito dal thread di ShareDispatcher.
+	 * Le sessioni la cui coda è piena scartano il frame
+	 * @param payload intestazione e messaggi nel formato descritto in ShareMessage, pronti per la lettura
+	 */
+	public void publish(ByteBuffer payload) {
+		if (subscribers.isEmpty()) return;
+
+		ByteBuffer frame = ByteBuffer.allocate(8 + payload.remaining());
+		int frameStart = FrameCodec.beginFrame(frame);
+		frame.putInt(ServerResponse.SHARES);
+		frame.put(payload);
+		FrameCodec.endFrame(frame, frameStart);
+		frame.flip();
+
+		ByteBuffer shared = frame.asReadOnlyBuffer();
+
+		for (Session session : subscribers) {
+			session.offerShares(shared.duplicate());
+		}
+
+		if (!pendingDelivery.getAndSet(true)) wakeup.run();
+	}
+
+	/**
+	 * Metodo che restituisce true, una sola volta, se dall'ultima chiamata sono stati accodati nuovi frame
+	 * @return true se le sessioni gestite dal Selector devono essere svuotate
+	 */
+	public Boolean takePendingDelivery() {
+		return pendingDelivery.getAndSet(false);
+	}
+}
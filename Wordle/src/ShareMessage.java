@@ -0,0 +1,153 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Classe che rappresenta il risultato di una partita condiviso da un utente, inviato al gruppo multicast in forma binaria.
+ * Un datagramma inizia con la versione del formato (byte) e l'impronta del dizionario del server (int),
+ * seguite da uno o più messaggi, ognuno composto da: lunghezza del nome utente (byte) e nome utente in UTF-8,
+ * troncato a MAX_NAME_BYTES byte, posizione della parola nel dizionario (3 byte, UNKNOWN_WORD se assente),
+ * numero di tentativi con l'esito nel bit più significativo (byte) ed epoca della parola (int).
+ * La parola viene ricavata dal dizionario del client, e il testo del messaggio viene creato solo quando serve
+ *
+ * @author Lorenzo Deriu
+ */
+public class ShareMessage {
+	public static final byte VERSION = 1;
+	public static final int HEADER_SIZE = 5; // versione e impronta del dizionario
+	public static final int MAX_NAME_BYTES = 32;
+	public static final int MAX_SIZE = 1 + MAX_NAME_BYTES + 3 + 1 + 4;
+
+	private static final int UNKNOWN_WORD = 0xFFFFFF;
+	private static final int GUESSED_FLAG = 0x80;
+
+	private static final String GuessedMessage = "%s ha indovinato \"%s\" in %d tentativi";
+	private static final String NotGuessedMessage = "%s non ha indovinato \"%s\" in %d tentativi";
+
+	private final String username;
+	private final int wordIndex;
+	private final int attemptsCount;
+	private final Boolean guessed;
+	private final int epoch;
+
+	/**
+	 * Costruttore della classe
+	 * @param username nome utente
+	 * @param wordIndex posizione della parola nel dizionario, -1 se la parola non fa parte del dizionario
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param epoch epoca della parola segreta in cui è stato condiviso il messaggio
+	 */
+	public ShareMessage(String username, int wordIndex, int attemptsCount, Boolean guessed, int epoch) {
+		this.username = username;
+		this.wordIndex = wordIndex;
+		this.attemptsCount = attemptsCount;
+		this.guessed = guessed;
+		this.epoch = epoch;
+	}
+
+	/**
+	 * Metodo che restituisce il nome utente, eventualmente troncato
+	 * @return nome utente
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Metodo che restituisce l'epoca della parola segreta in cui è stato condiviso il messaggio
+	 * @return epoca della parola
+	 */
+	public int getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Metodo che crea il testo del messaggio
+	 * @param word parola da indovinare, ricavata dalla posizione nel dizionario
+	 * @return testo del messaggio
+	 */
+	public String render(String word) {
+		return String.format(Boolean.TRUE.equals(guessed) ? GuessedMessage : NotGuessedMessage, username, word, attemptsCount);
+	}
+
+	/**
+	 * Metodo che crea il testo del messaggio ricavando la parola dal dizionario
+	 * @param vocabulary dizionario, null se diverso da quello del server
+	 * @return testo del messaggio
+	 */
+	public String render(Vocabulary vocabulary) {
+		Boolean known = vocabulary != null && wordIndex >= 0 && wordIndex < vocabulary.size();
+
+		return render(known ? vocabulary.wordAt(wordIndex) : "?");
+	}
+
+	/**
+	 * Metodo che restituisce una copia del messaggio senza la posizione della parola,
+	 * utilizzato quando il dizionario del server è diverso da quello del client
+	 * @return messaggio con parola sconosciuta
+	 */
+	public ShareMessage withoutWord() {
+		return new ShareMessage(username, -1, attemptsCount, guessed, epoch);
+	}
+
+	/**
+	 * Metodo che scrive l'intestazione di un datagramma
+	 * @param buffer buffer su cui scrivere
+	 * @param vocabularyFingerprint impronta del dizionario del server, restituita da fingerprint()
+	 */
+	public static void writeHeader(ByteBuffer buffer, int vocabularyFingerprint) {
+		buffer.put(VERSION);
+		buffer.putInt(vocabularyFingerprint);
+	}
+
+	/**
+	 * Metodo che scrive il messaggio nel buffer, occupando al più MAX_SIZE byte
+	 * @param buffer buffer su cui scrivere
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		String name = username;
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+
+		while (nameBytes.length > MAX_NAME_BYTES) { // troncato senza spezzare un carattere
+			name = name.substring(0, name.offsetByCodePoints(name.length(), -1));
+			nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		}
+
+		int word = (wordIndex < 0 || wordIndex >= UNKNOWN_WORD) ? UNKNOWN_WORD : wordIndex;
+
+		buffer.put((byte) nameBytes.length);
+		buffer.put(nameBytes);
+		buffer.put((byte) (word >>> 16));
+		buffer.putShort((short) word);
+		buffer.put((byte) ((Math.max(0, Math.min(attemptsCount, 0x7F))) | (Boolean.TRUE.equals(guessed) ? GUESSED_FLAG : 0)));
+		buffer.putInt(epoch);
+	}
+
+	/**
+	 * Metodo che legge un messaggio scritto da writeTo()
+	 * @param buffer buffer da cui leggere
+	 * @return messaggio letto
+	 */
+	public static ShareMessage readFrom(ByteBuffer buffer) {
+		byte[] nameBytes = new byte[buffer.get() & 0xFF];
+		buffer.get(nameBytes);
+
+		int word = ((buffer.get() & 0xFF) << 16) | (buffer.getShort() & 0xFFFF);
+		int attempts = buffer.get() & 0xFF;
+		int epoch = buffer.getInt();
+
+		return new ShareMessage(new String(nameBytes, StandardCharsets.UTF_8), word == UNKNOWN_WORD ? -1 : word,
+				attempts & ~GUESSED_FLAG, (attempts & GUESSED_FLAG) != 0, epoch);
+	}
+
+	/**
+	 * Metodo che calcola l'impronta del dizionario inviata nell'intestazione dei datagrammi
+	 * @param vocabulary dizionario
+	 * @return impronta del dizionario
+	 */
+	public static int fingerprint(Vocabulary vocabulary) {
+		long checksum = vocabulary.getChecksum();
+
+		return (int) (checksum ^ (checksum >>> 32));
+	}
+}
@@ -1,5 +1,9 @@
+import java.io.IOException;
 import java.util.ArrayList;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
 /**
  * Classe che rappresenta un utente del gioco
  * 
@@ -9,12 +13,15 @@ public class User {
 	private String username;
 	private String password;
 
-	private ArrayList<GameRecord> gameRecord; 
+	private PackedGameHistory history; // partite giocate in forma compatta
+	private UserStatistics statistics; // statistiche aggiornate a ogni partita conclusa
 
 	private int attempt;
 
 	private Boolean wordGuessed;
 
+	public static final int MIN_BINARY_SIZE = 9; // dimensione minima in byte di un utente nel backup binario
+
 	/**
 	 * Costruttore della classe
 	 * @param username nome utente
@@ -28,7 +35,26 @@ public class User {
 
 		this.attempt = attempt;
 		this.wordGuessed = wordGuessed;
-		this.gameRecord = new ArrayList<>();
+		this.history = new PackedGameHistory();
+		this.statistics = new UserStatistics();
+	}
+
+	/**
+	 * Costruttore della classe
+	 * @param username nome utente
+	 * @param password password
+	 * @param attempt numero di tentativi
+	 * @param wordGuessed se la parola è stata indovinata
+	 * @param history partite giocate
+	 */
+	public User(String username, String password, int attempt, Boolean wordGuessed, PackedGameHistory history) {
+		this.username = username;
+		this.password = password;
+
+		this.attempt = attempt;
+		this.wordGuessed = wordGuessed;
+		this.history = history;
+		this.statistics = UserStatistics.of(history);
 	}
 
 	/**
@@ -37,15 +63,25 @@ public class User {
 	 * @param password password
 	 * @param attempt numero di tentativi
 	 * @param wordGuessed se la parola è stata indovinata
-	 * @param gameRecord lista delle partite giocate
+	 * @param history partite giocate
+	 * @param statistics statistiche delle partite giocate
 	 */
-	public User(String username, String password, int attempt, Boolean wordGuessed, ArrayList<GameRecord> gameRecord) {
+	private User(String username, String password, int attempt, Boolean wordGuessed, PackedGameHistory history, UserStatistics statistics) {
 		this.username = username;
 		this.password = password;
 
 		this.attempt = attempt;
 		this.wordGuessed = wordGuessed;
-		this.gameRecord = gameRecord;
+		this.history = history;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Metodo che restituisce una copia dell'utente, con una copia delle partite giocate e delle statistiche
+	 * @return copia dell'utente
+	 */
+	public User copy() {
+		return new User(username, password, attempt, wordGuessed, history.copy(), statistics.copy());
 	}
 
 	/**
@@ -92,9 +128,32 @@ public class User {
 	 * @param oldWord parola che l0utente ha cercato di indovinare
 	 */
 	public void updateStats(String oldWord) {
-		this.gameRecord.add(new GameRecord(this.attempt, this.wordGuessed, oldWord));
+		this.history.add(this.attempt, this.wordGuessed, oldWord, System.currentTimeMillis());
+		this.statistics.add(this.attempt, this.wordGuessed);
+	}
+
+	/**
+	 * Metodo che aggiunge una partita già conclusa, letta dal log delle modifiche
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param word parola da indovinare
+	 * @param timestamp momento di fine partita in millisecondi, 0 se sconosciuto
+	 */
+	public void addGameRecord(int attemptsCount, Boolean guessed, String word, long timestamp) {
+		this.history.add(attemptsCount, guessed, word, timestamp);
+		this.statistics.add(attemptsCount, guessed);
 	}
 	
+	/**
+	 * Metodo che ripristina lo stato della partita corrente, letto dal log delle modifiche
+	 * @param attempt numero di tentativi
+	 * @param wordGuessed se la parola è stata indovinata
+	 */
+	public void restoreGame(int attempt, Boolean wordGuessed) {
+		this.attempt = attempt;
+		this.wordGuessed = wordGuessed;
+	}
+
 	/**
 	 * Metodo i dati di gioco dell'utente
 	 */
@@ -112,11 +171,27 @@ public class User {
 	}
 
 	/**
-	 * Metodo che restituisce la lista delle partite giocate
+	 * Metodo che restituisce la lista delle partite giocate, creata a partire dalla forma compatta
 	 * @return lista delle partite giocate
 	 */
 	public ArrayList<GameRecord> getGameRecord() {
-		return gameRecord;
+		return history.toGameRecords();
+	}
+
+	/**
+	 * Metodo che restituisce le partite giocate in forma compatta
+	 * @return partite giocate
+	 */
+	public PackedGameHistory getHistory() {
+		return history;
+	}
+
+	/**
+	 * Metodo che restituisce le statistiche delle partite giocate
+	 * @return statistiche dell'utente
+	 */
+	public UserStatistics getStatistics() {
+		return statistics;
 	}
 
 	/**
@@ -124,6 +199,118 @@ public class User {
 	 * @return ultima partita giocata
 	 */
 	public GameRecord getLastGameRecord() {
-		return gameRecord.get(gameRecord.size() - 1);
+		return history.get(history.size() - 1);
+	}
+
+	/**
+	 * Metodo che scrive l'utente come oggetto JSON, con gli stessi campi e lo stesso ordine utilizzati da Gson.
+	 * Le partite giocate vengono scritte una alla volta
+	 * @param writer JsonWriter su cui scrivere
+	 * @throws IOException
+	 */
+	public void writeJson(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		if (username != null) writer.name("username").value(username);
+		if (password != null) writer.name("password").value(password);
+
+		writer.name("gameRecord").beginArray();
+		for (int i = 0; i < history.size(); i++) {
+			GameRecord.writeJson(writer, history.getAttemptsCount(i), history.guessed(i), history.getWordToGuess(i), history.getTimestamp(i));
+		}
+		writer.endArray();
+
+		writer.name("attempt").value(attempt);
+		if (wordGuessed != null) writer.name("wordGuessed").value(wordGuessed);
+		writer.endObject();
+	}
+
+	/**
+	 * Metodo che legge un utente da un oggetto JSON, i campi sconosciuti vengono ignorati
+	 * @param reader JsonReader da cui leggere
+	 * @return utente letto
+	 * @throws IOException
+	 */
+	public static User readJson(JsonReader reader) throws IOException {
+		String username = null;
+		String password = null;
+		PackedGameHistory history = new PackedGameHistory();
+		int attempt = 0;
+		Boolean wordGuessed = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "username": username = JsonBackup.nextString(reader); break;
+				case "password": password = JsonBackup.nextString(reader); break;
+				case "attempt": attempt = reader.nextInt(); break;
+				case "wordGuessed": wordGuessed = JsonBackup.nextBoolean(reader); break;
+
+				case "gameRecord":
+				if (JsonBackup.skipNull(reader)) break;
+
+				reader.beginArray();
+				while (reader.hasNext()) {
+					GameRecord record = GameRecord.readJson(reader);
+					history.add(record, record.getTimestamp());
+				}
+				reader.endArray();
+				break;
+
+				default: reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new User(username, password, attempt, wordGuessed, history);
+	}
+
+	/**
+	 * Metodo che scrive l'utente nel backup binario, preceduto dalla sua lunghezza
+	 * @param output backup binario su cui scrivere
+	 * @throws IOException
+	 */
+	public void writeBinary(BinaryBackup output) throws IOException {
+		long block = output.beginBlock();
+
+		output.putString(username);
+		output.putString(password);
+		output.putVarint(attempt);
+		output.putBoolean(wordGuessed);
+
+		output.putVarint(history.size());
+		for (int i = 0; i < history.size(); i++) {
+			GameRecord.writeBinary(output, history.getAttemptsCount(i), history.guessed(i), history.getWordToGuess(i), history.getTimestamp(i));
+		}
+
+		output.endBlock(block);
+	}
+
+	/**
+	 * Metodo che legge un utente dal backup binario
+	 * @param input backup binario da cui leggere
+	 * @return utente letto
+	 */
+	public static User readBinary(BinaryBackup input) {
+		int blockEnd = input.readBlockLength();
+
+		String username = input.getString();
+		String password = input.getString();
+		int attempt = input.getVarint();
+		Boolean wordGuessed = input.getBoolean();
+
+		int recordCount = input.getVarint();
+		PackedGameHistory history = new PackedGameHistory();
+
+		for (int i = 0; i < recordCount; i++) {
+			int attemptsCount = input.getVarint();
+			Boolean guessed = input.getBoolean();
+			String word = input.getWord();
+
+			history.add(attemptsCount, guessed, word, input.getTimestamp());
+		}
+
+		input.skipBlock(blockEnd);
+
+		return new User(username, password, attempt, wordGuessed, history);
 	}
 }
@@ -0,0 +1,178 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Classe che rappresenta le statistiche di gioco di un utente: partite giocate, vittorie, sconfitte,
+ * serie di vittorie corrente e massima e distribuzione dei tentativi delle partite vinte.
+ * Le statistiche vengono aggiornate a ogni partita conclusa, in modo che inviarle non richieda
+ * di scorrere lo storico delle partite
+ *
+ * @author Lorenzo Deriu
+ */
+public class UserStatistics {
+	public static final int MAX_ATTEMPTS = 12;
+	public static final int BINARY_SIZE = 4 * (5 + MAX_ATTEMPTS); // dimensione in byte delle statistiche inviate al client
+
+	private int gamesPlayed;
+	private int wins;
+	private int currentStreak;
+	private int maxStreak;
+	private int winningAttempts; // somma dei tentativi delle partite vinte
+
+	private final int[] guessDistribution; // partite vinte per numero di tentativi
+
+	/**
+	 * Costruttore della classe
+	 */
+	public UserStatistics() {
+		this.guessDistribution = new int[MAX_ATTEMPTS];
+	}
+
+	/**
+	 * Metodo che calcola le statistiche a partire dalle partite giocate, utilizzato al caricamento dei dati
+	 * @param history partite giocate
+	 * @return statistiche delle partite
+	 */
+	public static UserStatistics of(PackedGameHistory history) {
+		UserStatistics statistics = new UserStatistics();
+
+		for (int i = 0; i < history.size(); i++) {
+			statistics.add(history.getAttemptsCount(i), history.guessed(i));
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Metodo che aggiorna le statistiche con una partita conclusa.
+	 * Le partite con esito sconosciuto vengono contate come sconfitte
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 */
+	public void add(int attemptsCount, Boolean guessed) {
+		gamesPlayed++;
+
+		if (guessed != null && guessed) {
+			wins++;
+			currentStreak++;
+			maxStreak = Math.max(maxStreak, currentStreak);
+
+			int bucket = Math.max(1, Math.min(attemptsCount, MAX_ATTEMPTS));
+			guessDistribution[bucket - 1]++;
+			winningAttempts += bucket;
+		} else {
+			currentStreak = 0;
+		}
+	}
+
+	/**
+	 * Metodo che restituisce una copia delle statistiche
+	 * @return copia delle statistiche
+	 */
+	public UserStatistics copy() {
+		UserStatistics copy = new UserStatistics();
+
+		copy.gamesPlayed = gamesPlayed;
+		copy.wins = wins;
+		copy.currentStreak = currentStreak;
+		copy.maxStreak = maxStreak;
+		copy.winningAttempts = winningAttempts;
+		System.arraycopy(guessDistribution, 0, copy.guessDistribution, 0, MAX_ATTEMPTS);
+
+		return copy;
+	}
+
+	/**
+	 * Metodo che restituisce il numero di partite giocate
+	 * @return numero di partite giocate
+	 */
+	public int getGamesPlayed() {
+		return gamesPlayed;
+	}
+
+	/**
+	 * Metodo che restituisce il numero di partite vinte
+	 * @return numero di vittorie
+	 */
+	public int getWins() {
+		return wins;
+	}
+
+	/**
+	 * Metodo che restituisce il numero di partite perse
+	 * @return numero di sconfitte
+	 */
+	public int getLosses() {
+		return gamesPlayed - wins;
+	}
+
+	/**
+	 * Metodo che restituisce il numero di vittorie consecutive fino all'ultima partita giocata
+	 * @return serie di vittorie corrente
+	 */
+	public int getCurrentStreak() {
+		return currentStreak;
+	}
+
+	/**
+	 * Metodo che restituisce il massimo numero di vittorie consecutive
+	 * @return serie di vittorie massima
+	 */
+	public int getMaxStreak() {
+		return maxStreak;
+	}
+
+	/**
+	 * Metodo che restituisce la somma dei tentativi delle partite vinte, utilizzata per calcolare la media dei tentativi
+	 * @return tentativi totali delle partite vinte
+	 */
+	public int getWinningAttempts() {
+		return winningAttempts;
+	}
+
+	/**
+	 * Metodo che restituisce il numero di partite vinte con il numero di tentativi indicato
+	 * @param attemptsCount numero di tentativi, da 1 a MAX_ATTEMPTS
+	 * @return numero di partite vinte
+	 */
+	public int getGuessCount(int attemptsCount) {
+		return guessDistribution[attemptsCount - 1];
+	}
+
+	/**
+	 * Metodo che scrive le statistiche nel buffer, occupando BINARY_SIZE byte
+	 * @param buffer buffer su cui scrivere
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		buffer.putInt(gamesPlayed);
+		buffer.putInt(wins);
+		buffer.putInt(getLosses());
+		buffer.putInt(currentStreak);
+		buffer.putInt(maxStreak);
+
+		for (int count : guessDistribution) {
+			buffer.putInt(count);
+		}
+	}
+
+	/**
+	 * Metodo che legge le statistiche scritte da writeTo()
+	 * @param buffer buffer da cui leggere
+	 * @return statistiche lette
+	 */
+	public static UserStatistics readFrom(ByteBuffer buffer) {
+		UserStatistics statistics = new UserStatistics();
+
+		statistics.gamesPlayed = buffer.getInt();
+		statistics.wins = buffer.getInt();
+		buffer.getInt(); // le sconfitte si ricavano dalle partite giocate e dalle vittorie
+		statistics.currentStreak = buffer.getInt();
+		statistics.maxStreak = buffer.getInt();
+
+		for (int i = 0; i < MAX_ATTEMPTS; i++) {
+			statistics.guessDistribution[i] = buffer.getInt();
+			statistics.winningAttempts += (i + 1) * statistics.guessDistribution[i];
+		}
+
+		return statistics;
+	}
+}
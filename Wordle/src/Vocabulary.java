@@ -1,42 +1,108 @@
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
- * Classe che rappresenta il dizionario con tutte le parole supportate dal gioco
- * 
+ * Classe che rappresenta il dizionario con tutte le parole supportate dal gioco.
+ * Ogni parola è composta da 10 lettere minuscole e viene memorizzata impacchettata in un long, 5 bit per lettera,
+ * in un array ordinato. Al caricamento viene costruito un indice a indirizzamento aperto che associa a ogni parola
+ * la sua posizione nell'array, così la ricerca richiede tempo costante e non alloca oggetti
+ *
  * @author Lorenzo Deriu
  */
 public class Vocabulary {
-	private ArrayList<String> words;
-	
+	private long[] words; // parole impacchettate in ordine alfabetico
+	private int wordCount;
+
+	private int[] index; // posizione della parola nell'array words più 1, 0 indica una cella vuota
+	private int indexMask;
+
+	private static final int WORD_LENGTH = 10;
+	private static final long NOT_A_WORD = -1;
+
 	/**
 	 * Costruttore della classe
 	 * @param fileName nome del file da cui caricare il dizionario
 	 */
 	public Vocabulary(String fileName) {
-		words = new ArrayList<>();
-		
-		try {
-			FileReader fileReader = new FileReader(fileName);
-			BufferedReader bufferedReader = new BufferedReader(fileReader);
+		words = new long[0];
 
-			String word;
-			while ((word = bufferedReader.readLine()) != null) {
-				words.add(word);
-			}
+		try {
+			FileInputStream fileInputStream = new FileInputStream(fileName);
+			byte[] content = fileInputStream.readAllBytes();
 
-			fileReader.close();
-			bufferedReader.close();
+			fileInputStream.close();
 
+			loadWords(content);
 		} catch (FileNotFoundException e) {
 			System.out.println("Il file del dizionario non esiste");
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		buildIndex();
+	}
+
+	/**
+	 * Metodo che impacchetta le parole contenute nel file, una per riga, senza creare una String per ogni parola.
+	 * Le righe che non sono composte da 10 lettere minuscole vengono ignorate
+	 * @param content contenuto del file del dizionario
+	 */
+	private void loadWords(byte[] content) {
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+
+		words = new long[content.length / (WORD_LENGTH + 1) + 1];
+		wordCount = 0;
+
+		int lineStart = 0;
+
+		for (int i = 0; i <= content.length; i++) {
+			if (i < content.length && content[i] != '\n') continue;
+
+			int lineEnd = (i > lineStart && content[i - 1] == '\r') ? i - 1 : i;
+			long key = pack(buffer, lineStart, lineEnd - lineStart);
+
+			if (key != NOT_A_WORD) {
+				if (wordCount == words.length) words = Arrays.copyOf(words, wordCount * 2);
+				words[wordCount++] = key;
+			}
+
+			lineStart = i + 1;
+		}
+
+		Arrays.sort(words, 0, wordCount);
+
+		int distinctCount = 0;
+		for (int i = 0; i < wordCount; i++) {
+			if (distinctCount == 0 || words[distinctCount - 1] != words[i]) {
+				words[distinctCount++] = words[i];
+			}
+		}
+
+		wordCount = distinctCount;
+		words = Arrays.copyOf(words, wordCount);
+	}
+
+	/**
+	 * Metodo che costruisce l'indice delle parole, la tabella ha una dimensione pari ad almeno il doppio del numero di parole
+	 */
+	private void buildIndex() {
+		int capacity = Integer.highestOneBit(Math.max(wordCount, 1) * 2) * 2;
+
+		index = new int[capacity];
+		indexMask = capacity - 1;
+
+		for (int i = 0; i < wordCount; i++) {
+			int slot = slotOf(words[i]);
+
+			while (index[slot] != 0) {
+				slot = (slot + 1) & indexMask;
+			}
+			index[slot] = i + 1;
+		}
 	}
 
 	/**
@@ -45,7 +111,18 @@ public class Vocabulary {
 	 * @return true se la parola è presente nel dizionario, false altrimenti
 	 */
 	public Boolean isPresent(String word) {
-		return words.contains(word);
+		return contains(pack(word));
+	}
+
+	/**
+	 * Metodo che restituisce true se la parola di 10 byte contenuta nel buffer a partire da offset è presente nel dizionario.
+	 * La posizione del buffer non viene modificata
+	 * @param buffer buffer contenente la parola
+	 * @param offset posizione del primo byte della parola
+	 * @return true se la parola è presente nel dizionario, false altrimenti
+	 */
+	public Boolean isPresent(ByteBuffer buffer, int offset) {
+		return contains(pack(buffer, offset, WORD_LENGTH));
 	}
 
 	/**
@@ -53,8 +130,146 @@ public class Vocabulary {
 	 * @return parola casuale
 	 */
 	public String randomWord() {
-		int index = new Random().nextInt(words.size());
+		int index = new Random().nextInt(wordCount);
+
+		return unpack(words[index]);
+	}
+
+	/**
+	 * Metodo che restituisce il numero di parole del dizionario
+	 * @return numero di parole
+	 */
+	public int size() {
+		return wordCount;
+	}
+
+	/**
+	 * Metodo che restituisce la posizione della parola nel dizionario, le parole sono in ordine alfabetico
+	 * @param word parola da cercare
+	 * @return posizione della parola, -1 se la parola non è presente
+	 */
+	public int indexOf(String word) {
+		return positionOf(pack(word));
+	}
+
+	/**
+	 * Metodo che restituisce la parola che si trova nella posizione indicata
+	 * @param position posizione della parola, compresa tra 0 e size() - 1
+	 * @return parola
+	 */
+	public String wordAt(int position) {
+		return unpack(words[position]);
+	}
+
+	/**
+	 * Metodo che restituisce un valore che identifica il contenuto del dizionario, due dizionari con le stesse parole
+	 * hanno lo stesso valore. Permette di controllare che le posizioni salvate si riferiscano allo stesso dizionario
+	 * @return impronta del dizionario
+	 */
+	public long getChecksum() {
+		long checksum = wordCount;
+
+		for (int i = 0; i < wordCount; i++) {
+			checksum = (checksum ^ words[i]) * 0x100000001B3L;
+		}
+
+		return checksum;
+	}
+
+	/**
+	 * Metodo che cerca una parola impacchettata nell'indice
+	 * @param key parola impacchettata
+	 * @return true se la parola è presente, false altrimenti
+	 */
+	private Boolean contains(long key) {
+		return positionOf(key) != -1;
+	}
+
+	/**
+	 * Metodo che cerca una parola impacchettata nell'indice e ne restituisce la posizione nell'array words
+	 * @param key parola impacchettata
+	 * @return posizione della parola, -1 se la parola non è presente
+	 */
+	private int positionOf(long key) {
+		if (key == NOT_A_WORD) return -1;
+
+		int slot = slotOf(key);
+
+		while (index[slot] != 0) {
+			if (words[index[slot] - 1] == key) return index[slot] - 1;
+			slot = (slot + 1) & indexMask;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Metodo che restituisce la cella iniziale dell'indice per una parola impacchettata
+	 * @param key parola impacchettata
+	 * @return cella iniziale
+	 */
+	private int slotOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+
+		return (int) (hash ^ (hash >>> 32)) & indexMask;
+	}
+
+	/**
+	 * Metodo che impacchetta una parola di 10 lettere minuscole in un long, 5 bit per lettera a partire dalla prima.
+	 * L'ordine dei long corrisponde all'ordine alfabetico delle parole
+	 * @param word parola da impacchettare
+	 * @return parola impacchettata, NOT_A_WORD se la parola non è composta da 10 lettere minuscole
+	 */
+	private static long pack(String word) {
+		if (word == null || word.length() != WORD_LENGTH) return NOT_A_WORD;
+
+		long key = 0;
+
+		for (int i = 0; i < WORD_LENGTH; i++) {
+			int letter = word.charAt(i) - 'a';
+
+			if (letter < 0 || letter >= 26) return NOT_A_WORD;
+			key = (key << 5) | letter;
+		}
+
+		return key;
+	}
+
+	/**
+	 * Metodo che impacchetta una parola contenuta in un buffer
+	 * @param buffer buffer contenente la parola
+	 * @param offset posizione del primo byte della parola
+	 * @param length lunghezza in byte della parola
+	 * @return parola impacchettata, NOT_A_WORD se la parola non è composta da 10 lettere minuscole
+	 */
+	private static long pack(ByteBuffer buffer, int offset, int length) {
+		if (length != WORD_LENGTH || offset < 0 || buffer.limit() - offset < WORD_LENGTH) return NOT_A_WORD;
+
+		long key = 0;
+
+		for (int i = 0; i < WORD_LENGTH; i++) {
+			int letter = buffer.get(offset + i) - 'a';
+
+			if (letter < 0 || letter >= 26) return NOT_A_WORD;
+			key = (key << 5) | letter;
+		}
+
+		return key;
+	}
+
+	/**
+	 * Metodo che ricostruisce la parola a partire dalla sua forma impacchettata
+	 * @param key parola impacchettata
+	 * @return parola
+	 */
+	private static String unpack(long key) {
+		char[] letters = new char[WORD_LENGTH];
+
+		for (int i = WORD_LENGTH - 1; i >= 0; i--) {
+			letters[i] = (char) ('a' + (key & 31));
+			key >>>= 5;
+		}
 
-		return words.get(index);
+		return new String(letters);
 	}
 }
@@ -0,0 +1,65 @@
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Classe che rappresenta l'epoca della parola segreta, ovvero quante volte la parola è stata cambiata dall'avvio del server.
+ * Le sessioni in attesa della nuova parola si sospendono sulla Condition senza consumare CPU
+ * e vengono risvegliate tutte insieme quando l'epoca avanza.
+ * Viene utilizzato un ReentrantLock al posto del monitor per non bloccare i virtual thread sul proprio carrier thread
+ *
+ * @author Lorenzo Deriu
+ */
+public class WordEpoch {
+	private volatile long epoch;
+
+	private final ReentrantLock lock;
+	private final Condition changed;
+
+	/**
+	 * Costruttore della classe
+	 */
+	public WordEpoch() {
+		this.epoch = 0;
+		this.lock = new ReentrantLock();
+		this.changed = lock.newCondition();
+	}
+
+	/**
+	 * Metodo che restituisce l'epoca corrente
+	 * @return epoca corrente
+	 */
+	public long current() {
+		return epoch;
+	}
+
+	/**
+	 * Metodo che fa avanzare l'epoca e risveglia tutte le sessioni in attesa
+	 */
+	public void advance() {
+		lock.lock();
+		try {
+			epoch++;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che sospende il thread chiamante finché l'epoca non è diversa da quella già vista
+	 * @param seenEpoch ultima epoca vista dal chiamante
+	 * @return la nuova epoca
+	 * @throws InterruptedException se il thread viene interrotto durante l'attesa
+	 */
+	public long awaitChange(long seenEpoch) throws InterruptedException {
+		lock.lock();
+		try {
+			while (epoch == seenEpoch) {
+				changed.await();
+			}
+			return epoch;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
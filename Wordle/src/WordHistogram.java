@@ -0,0 +1,102 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classe che rappresenta la distribuzione dei risultati delle partite giocate su una parola segreta:
+ * quante partite sono state vinte con ogni numero di tentativi e quante sono state perse.
+ * Finché la parola è attiva i contatori sono LongAdder, che distribuiscono gli incrementi concorrenti
+ * su celle diverse invece di contendersi un unico valore; quando la parola viene archiviata i contatori
+ * vengono ridotti a un array di int con toCounts()
+ *
+ * @author Lorenzo Deriu
+ */
+public class WordHistogram {
+	public static final int MAX_ATTEMPTS = 12;
+	public static final int COUNTS_SIZE = MAX_ATTEMPTS + 1; // vittorie per numero di tentativi, seguite dalle sconfitte
+	public static final int BINARY_SIZE = 4 * COUNTS_SIZE; // dimensione in byte della distribuzione inviata al client
+
+	private final String word;
+	private final LongAdder[] counters;
+
+	/**
+	 * Costruttore della classe
+	 * @param word parola segreta
+	 */
+	public WordHistogram(String word) {
+		this.word = word;
+		this.counters = new LongAdder[COUNTS_SIZE];
+
+		for (int i = 0; i < COUNTS_SIZE; i++) {
+			counters[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Metodo che restituisce la parola segreta
+	 * @return parola segreta
+	 */
+	public String getWord() {
+		return word;
+	}
+
+	/**
+	 * Metodo che registra il risultato di una partita conclusa
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 */
+	public void record(int attemptsCount, Boolean guessed) {
+		counters[index(attemptsCount, guessed)].increment();
+	}
+
+	/**
+	 * Metodo che restituisce i contatori attuali in forma compatta
+	 * @return vittorie per numero di tentativi (da 1 a MAX_ATTEMPTS), seguite dalle sconfitte
+	 */
+	public int[] toCounts() {
+		int[] counts = new int[COUNTS_SIZE];
+
+		for (int i = 0; i < COUNTS_SIZE; i++) {
+			counts[i] = (int) counters[i].sum();
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Metodo che restituisce la posizione del contatore di una partita
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @return posizione del contatore, MAX_ATTEMPTS per le sconfitte
+	 */
+	public static int index(int attemptsCount, Boolean guessed) {
+		if (guessed == null || !guessed) return MAX_ATTEMPTS;
+
+		return Math.max(1, Math.min(attemptsCount, MAX_ATTEMPTS)) - 1;
+	}
+
+	/**
+	 * Metodo che scrive una distribuzione nel buffer, occupando BINARY_SIZE byte
+	 * @param buffer buffer su cui scrivere
+	 * @param counts distribuzione restituita da toCounts()
+	 */
+	public static void writeCounts(ByteBuffer buffer, int[] counts) {
+		for (int count : counts) {
+			buffer.putInt(count);
+		}
+	}
+
+	/**
+	 * Metodo che legge una distribuzione scritta da writeCounts()
+	 * @param buffer buffer da cui leggere
+	 * @return vittorie per numero di tentativi, seguite dalle sconfitte
+	 */
+	public static int[] readCounts(ByteBuffer buffer) {
+		int[] counts = new int[COUNTS_SIZE];
+
+		for (int i = 0; i < COUNTS_SIZE; i++) {
+			counts[i] = buffer.getInt();
+		}
+
+		return counts;
+	}
+}
@@ -0,0 +1,127 @@
+import java.util.HashMap;
+
+/**
+ * Classe che raccoglie i risultati delle partite di tutti gli utenti per ogni parola segreta.
+ * La parola attuale ha una distribuzione WordHistogram aggiornata senza lock dalle sessioni,
+ * a ogni cambio di parola la distribuzione precedente viene archiviata come array di int.
+ * La distribuzione della parola appena sostituita resta attiva fino al cambio successivo,
+ * in modo da contare anche le partite concluse a cavallo del cambio di parola
+ *
+ * @author Lorenzo Deriu
+ */
+public class WordResults {
+	private volatile WordHistogram current;
+	private volatile WordHistogram previous;
+
+	private final HashMap<String, int[]> archive = new HashMap<>(); // distribuzioni delle parole passate, protetta dal lock dell'oggetto
+
+	/**
+	 * Costruttore della classe
+	 * @param currentWord parola segreta attuale, può essere null
+	 */
+	public WordResults(String currentWord) {
+		this.current = new WordHistogram(currentWord);
+	}
+
+	/**
+	 * Metodo che registra il risultato di una partita conclusa.
+	 * Le partite sulla parola attuale o su quella appena sostituita non acquisiscono lock
+	 * @param word parola segreta della partita
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 */
+	public void record(String word, int attemptsCount, Boolean guessed) {
+		WordHistogram histogram = current;
+
+		if (!word.equals(histogram.getWord())) {
+			histogram = previous;
+		}
+
+		if (histogram != null && word.equals(histogram.getWord())) {
+			histogram.record(attemptsCount, guessed);
+			return;
+		}
+
+		addArchived(word, attemptsCount, guessed);
+	}
+
+	/**
+	 * Metodo che rende attiva la distribuzione della nuova parola segreta e archivia quella della parola precedente alla attuale
+	 * @param newWord nuova parola segreta
+	 */
+	public synchronized void rotate(String newWord) {
+		archive(previous);
+
+		previous = current;
+		current = new WordHistogram(newWord);
+	}
+
+	/**
+	 * Metodo che restituisce la distribuzione della parola attuale
+	 * @return vittorie per numero di tentativi, seguite dalle sconfitte
+	 */
+	public int[] currentCounts() {
+		return current.toCounts();
+	}
+
+	/**
+	 * Metodo che restituisce la distribuzione di una parola passata.
+	 * La parola attuale viene esclusa, in modo che la richiesta non riveli quale sia
+	 * @param word parola passata
+	 * @return vittorie per numero di tentativi seguite dalle sconfitte, null se sulla parola non sono state concluse partite
+	 */
+	public synchronized int[] archivedCounts(String word) {
+		int[] counts = archive.get(word);
+		int[] result = (counts == null) ? null : counts.clone();
+
+		WordHistogram histogram = previous;
+
+		if (histogram != null && word.equals(histogram.getWord()) && !word.equals(current.getWord())) {
+			int[] live = histogram.toCounts();
+
+			if (result == null) {
+				result = live;
+			} else {
+				for (int i = 0; i < result.length; i++) result[i] += live[i];
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Metodo che aggiunge una partita alla distribuzione attuale, utilizzato per ricostruire i risultati al caricamento dei dati
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 */
+	void restoreCurrent(int attemptsCount, Boolean guessed) {
+		current.record(attemptsCount, guessed);
+	}
+
+	/**
+	 * Metodo che aggiunge una partita all'archivio, utilizzato anche per ricostruire i risultati al caricamento dei dati
+	 * @param word parola segreta della partita
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 */
+	synchronized void addArchived(String word, int attemptsCount, Boolean guessed) {
+		archive.computeIfAbsent(word, (key) -> new int[WordHistogram.COUNTS_SIZE])[WordHistogram.index(attemptsCount, guessed)]++;
+	}
+
+	/**
+	 * Metodo che somma la distribuzione all'archivio della sua parola
+	 * @param histogram distribuzione da archiviare, può essere null
+	 */
+	private void archive(WordHistogram histogram) {
+		if (histogram == null || histogram.getWord() == null) return;
+
+		int[] counts = histogram.toCounts();
+		int[] archived = archive.get(histogram.getWord());
+
+		if (archived == null) {
+			archive.put(histogram.getWord(), counts);
+		} else {
+			for (int i = 0; i < counts.length; i++) archived[i] += counts[i];
+		}
+	}
+}
@@ -0,0 +1,82 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Classe che confronta una parola con la parola segreta lavorando direttamente sui byte, senza allocare oggetti.
+ * Le occorrenze delle lettere della parola segreta vengono lette dal SecretProfile e consumate su due long locali.
+ * Il risultato è codificato nel seguente modo:
+ * "+" -> la lettera è presente nella parola segreta nella giusta posizione,
+ * "?" -> la lettera è presente nella parola segreta ma in una posizione diversa,
+ * "X" -> la lettera non è presente nella parola segreta
+ *
+ * @author Lorenzo Deriu
+ */
+public class WordScorer {
+	public static final int WORD_LENGTH = 10;
+
+	private static final byte CORRECT_POSITION = '+';
+	private static final byte WRONG_POSITION = '?';
+	private static final byte NOT_PRESENT = 'X';
+
+	/**
+	 * Metodo che confronta la parola contenuta nel buffer guess, a partire dalla sua posizione corrente,
+	 * con la parola segreta e scrive i 10 byte del risultato nel buffer result.
+	 * Le posizioni di entrambi i buffer avanzano di 10 byte
+	 * @param secret profilo della parola segreta
+	 * @param guess buffer contenente la parola inserita dall'utente
+	 * @param result buffer in cui scrivere il risultato
+	 * @return true se la parola è stata indovinata, false altrimenti
+	 */
+	public static Boolean score(SecretProfile secret, ByteBuffer guess, ByteBuffer result) {
+		int guessStart = guess.position();
+		int resultStart = result.position();
+		int correctCount = 0;
+
+		long lowCounts = secret.getLowLetterCounts();
+		long highCounts = secret.getHighLetterCounts();
+		int letterMask = secret.getLetterMask();
+
+		// lettere nella giusta posizione
+		for (int i = 0; i < WORD_LENGTH; i++) {
+			byte letter = guess.get(guessStart + i);
+
+			if (letter == secret.letterAt(i)) {
+				result.put(resultStart + i, CORRECT_POSITION);
+				correctCount++;
+
+				int index = letter - 'a';
+
+				if (index >= 0 && index < 13) {
+					lowCounts -= 1L << (4 * index);
+				} else if (index >= 13 && index < 26) {
+					highCounts -= 1L << (4 * (index - 13));
+				}
+			} else {
+				result.put(resultStart + i, NOT_PRESENT);
+			}
+		}
+
+		// lettere presenti in una posizione diversa
+		for (int i = 0; i < WORD_LENGTH; i++) {
+			int index = guess.get(guessStart + i) - 'a';
+
+			if (index < 0 || index >= 26 || (letterMask & (1 << index)) == 0 || result.get(resultStart + i) != NOT_PRESENT) {
+				continue;
+			}
+
+			if (index < 13) {
+				if (((lowCounts >>> (4 * index)) & 0xF) > 0) {
+					result.put(resultStart + i, WRONG_POSITION);
+					lowCounts -= 1L << (4 * index);
+				}
+			} else if (((highCounts >>> (4 * (index - 13))) & 0xF) > 0) {
+				result.put(resultStart + i, WRONG_POSITION);
+				highCounts -= 1L << (4 * (index - 13));
+			}
+		}
+
+		guess.position(guessStart + WORD_LENGTH);
+		result.position(resultStart + WORD_LENGTH);
+
+		return correctCount == WORD_LENGTH;
+	}
+}
@@ -0,0 +1,163 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Classe che controlla che WordScorer dia lo stesso risultato dell'implementazione originale del confronto,
+ * basata su una HashMap delle occorrenze e su substring, per ogni coppia di parola segreta e parola inserita.
+ * Vengono confrontate tutte le parole di 10 lettere formate da due sole lettere (ogni combinazione di lettere ripetute)
+ * e tutte le coppie di parole del dizionario; con un passo maggiore di 1 viene controllata solo una parola segreta ogni passo.
+ * Utilizzo: java WordScorerCheckMain fileDelDizionario [passo]
+ *
+ * @author Lorenzo Deriu
+ */
+public class WordScorerCheckMain {
+	private static final String ALL_CORRECT = "++++++++++";
+
+	public static void main(String[] args) {
+		int step = 1;
+
+		try {
+			if (args.length > 1) step = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			step = 0;
+		}
+
+		if (args.length < 1 || args.length > 2 || step < 1) {
+			System.out.println(ServerOutputMessage.ScorerCheckUsageMessage);
+			System.exit(1);
+		}
+
+		// parole formate dalle lettere 'a' e 'b': tutte le combinazioni di lettere ripetute nelle 10 posizioni
+		String[] repeatedLetters = new String[1 << WordScorer.WORD_LENGTH];
+
+		for (int mask = 0; mask < repeatedLetters.length; mask++) {
+			char[] word = new char[WordScorer.WORD_LENGTH];
+
+			for (int i = 0; i < WordScorer.WORD_LENGTH; i++) {
+				word[i] = (mask & (1 << i)) == 0 ? 'a' : 'b';
+			}
+
+			repeatedLetters[mask] = new String(word);
+		}
+
+		long checked = 0;
+
+		for (String secret : repeatedLetters) {
+			SecretProfile profile = new SecretProfile(secret, 0);
+
+			for (String guess : repeatedLetters) {
+				check(profile, guess);
+			}
+		}
+
+		checked += (long) repeatedLetters.length * repeatedLetters.length;
+
+		Vocabulary vocabulary = new Vocabulary(args[0]);
+		String[] words = new String[vocabulary.size()];
+
+		for (int i = 0; i < words.length; i++) {
+			words[i] = vocabulary.wordAt(i);
+		}
+
+		for (int i = 0; i < words.length; i += step) {
+			SecretProfile profile = new SecretProfile(words[i], 0);
+
+			for (String guess : words) {
+				check(profile, guess);
+			}
+
+			checked += words.length;
+		}
+
+		System.out.printf(ServerOutputMessage.ScorerCheckSuccessMessage, checked);
+	}
+
+	/**
+	 * Metodo che confronta il risultato di WordScorer con quello dell'implementazione originale, e termina il programma se sono diversi
+	 * @param secret profilo della parola segreta
+	 * @param guess parola inserita dall'utente
+	 */
+	private static void check(SecretProfile secret, String guess) {
+		ByteBuffer guessBuffer = ByteBuffer.wrap(guess.getBytes(StandardCharsets.US_ASCII));
+		ByteBuffer resultBuffer = ByteBuffer.allocate(WordScorer.WORD_LENGTH);
+
+		Boolean guessed = WordScorer.score(secret, guessBuffer, resultBuffer);
+		String result = new String(resultBuffer.array(), StandardCharsets.US_ASCII);
+		String expected = originalScore(secret.getWord(), guess);
+
+		if (!result.equals(expected) || guessed != expected.equals(ALL_CORRECT)) {
+			System.out.printf(ServerOutputMessage.ScorerCheckErrorMessage, secret.getWord(), guess, expected, result);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Implementazione originale del confronto tra la parola inserita dall'utente e la parola segreta, eseguita da Session prima di WordScorer
+	 * @param secreteWord Parola segreta
+	 * @param word Parola inserita dall'utente
+	 * @return Stringa contenente i risultati del confronto
+	 */
+	private static String originalScore(String secreteWord, String word) {
+		HashMap<String,Integer> occurrence = new HashMap<String,Integer>();
+
+		for (int i = 0; i < secreteWord.length(); i++) {
+			String letter = secreteWord.charAt(i) + "";
+
+			if (occurrence.containsKey(letter)) {
+				occurrence.compute(letter, (k, v) -> v + 1);
+			} else {
+				occurrence.put(letter, 1);
+			}
+		}
+
+		String result = "XXXXXXXXXX";
+
+		result = markCorrectPositions(secreteWord, word, occurrence, result);
+		result = markCorrectLetters(secreteWord, word, occurrence, result);
+
+		return result;
+	}
+
+	/**
+	 * Metodo che marca le lettere inserite dall'utente se sono presenti nella parola segreta nella giusta posizione
+	 * @param secreteWord Parola segreta
+	 * @param word Parola inserita dall'utente
+	 * @param occurrence Mappa che contiene le occorrenze delle lettere nella parola segreta
+	 * @param result Stringa contenente i risultati del confronto fin'ora ottenuti
+	 * @return Stringa contenente i risultati del confronto
+	 */
+	private static String markCorrectPositions(String secreteWord, String word, HashMap<String,Integer> occurrence, String result) {
+		for (int i = 0; i < secreteWord.length(); i++) {
+			if (secreteWord.charAt(i) == word.charAt(i)) {
+				result = result.substring(0, i) + "+" + result.substring(i + 1);
+				
+				String c = word.charAt(i) + "";
+				occurrence.compute(c, (key, value) -> value = value - 1);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Metodo che marca le lettere inserite dall'utente se sono presenti nella parola segreta ma in una posizione diversa
+	 * @param secreteWord Parola segreta
+	 * @param word Parola inserita dall'utente
+	 * @param occurrence Mappa che contiene le occorrenze delle lettere nella parola segreta
+	 * @param result Stringa contenente i risultati del confronto fin'ora ottenuti
+	 * @return Stringa contenente i risultati del confronto
+	 */
+	private static String markCorrectLetters(String secreteWord, String word, HashMap<String,Integer> occurrence, String result) {
+		for (int i = 0; i < secreteWord.length(); i++) {
+			String c = "" + word.charAt(i);
+
+			if (occurrence.containsKey(c) && occurrence.get(c) > 0 && result.charAt(i) == 'X') {
+				result = result.substring(0, i) + "?" + result.substring(i + 1);
+				occurrence.compute(c, (key, value) -> value = value - 1);
+			}
+		}
+
+		return result;
+	}
+}
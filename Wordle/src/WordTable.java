@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classe che associa a ogni parola un identificativo intero, utilizzato per memorizzare le parole delle partite giocate.
+ * Le parole del dizionario hanno come identificativo la loro posizione nel dizionario,
+ * le altre parole (ad esempio quelle di un backup scritto con un dizionario diverso) ricevono un identificativo
+ * successivo all'ultima parola del dizionario la prima volta che vengono incontrate
+ *
+ * @author Lorenzo Deriu
+ */
+public class WordTable {
+	private static volatile Vocabulary vocabulary;
+	private static volatile String[] vocabularyWords = new String[0]; // parole del dizionario già create, condivise
+
+	private static final ConcurrentHashMap<String, Integer> extraIds = new ConcurrentHashMap<>();
+	private static final ArrayList<String> extraWords = new ArrayList<>();
+
+	/**
+	 * Metodo che imposta il dizionario, da chiamare prima di registrare qualsiasi parola
+	 * @param vocabulary dizionario del gioco
+	 * @throws IllegalStateException se sono già state registrate parole fuori dal dizionario
+	 */
+	public static synchronized void setVocabulary(Vocabulary vocabulary) {
+		if (!extraWords.isEmpty()) {
+			throw new IllegalStateException("Il dizionario deve essere impostato prima di registrare le parole");
+		}
+
+		WordTable.vocabularyWords = new String[vocabulary.size()];
+		WordTable.vocabulary = vocabulary;
+	}
+
+	/**
+	 * Metodo che restituisce l'identificativo della parola, registrandola se non fa parte del dizionario
+	 * @param word parola
+	 * @return identificativo della parola
+	 */
+	public static int idOf(String word) {
+		Vocabulary vocabulary = WordTable.vocabulary;
+
+		if (vocabulary != null) {
+			int position = vocabulary.indexOf(word);
+
+			if (position != -1) return position;
+		}
+
+		Integer id = extraIds.get(word);
+
+		if (id != null) return id;
+
+		synchronized (WordTable.class) {
+			id = extraIds.get(word);
+
+			if (id == null) {
+				id = vocabularySize() + extraWords.size();
+				extraWords.add(word);
+				extraIds.put(word, id);
+			}
+
+			return id;
+		}
+	}
+
+	/**
+	 * Metodo che restituisce la posizione della parola nel dizionario, senza registrarla
+	 * @param word parola
+	 * @return posizione della parola nel dizionario, -1 se la parola non ne fa parte
+	 */
+	public static int vocabularyIndexOf(String word) {
+		Vocabulary vocabulary = WordTable.vocabulary;
+
+		return (vocabulary == null || word == null) ? -1 : vocabulary.indexOf(word);
+	}
+
+	/**
+	 * Metodo che restituisce la parola associata all'identificativo
+	 * @param id identificativo restituito da idOf()
+	 * @return parola
+	 */
+	public static String wordOf(int id) {
+		String[] words = vocabularyWords;
+
+		if (id < words.length) {
+			String word = words[id];
+
+			if (word == null) { // le String sono immutabili, al più la stessa parola viene creata due volte
+				word = vocabulary.wordAt(id);
+				words[id] = word;
+			}
+
+			return word;
+		}
+
+		synchronized (WordTable.class) {
+			return extraWords.get(id - words.length);
+		}
+	}
+
+	/**
+	 * Metodo che restituisce il numero di parole del dizionario
+	 * @return numero di parole del dizionario, 0 se il dizionario non è stato impostato
+	 */
+	private static int vocabularySize() {
+		return vocabularyWords.length;
+	}
+}
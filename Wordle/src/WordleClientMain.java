@@ -3,14 +3,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 /**
@@ -27,10 +26,15 @@ public class WordleClientMain {
 	private static Scanner scanner = new Scanner(System.in);
 	private static Vocabulary vocabulary;
 
+	private static FrameCodec connectionCodec;
+
 	private static NotificationHandler notificationHandler;
-	private static Thread notificationHandlerThread;
+	private static Boolean sharesOverConnection = false; // true se le condivisioni arrivano sulla connessione con il server invece che dal gruppo multicast
 
-	private static final String WINNING_RESPONSE = "++++++++++";
+	private static final int MAX_ATTEMPTS = 12; // tentativi per ogni parola segreta
+	private static final int HISTORY_PAGE_SIZE = 20; // partite richieste per ogni pagina dello storico
+	private static final int LEADERBOARD_SIZE = 10; // posizioni della classifica richieste
+	private static final int WORD_RESULTS_BAR_WIDTH = 50; // lunghezza massima delle barre dei risultati di tutti i giocatori
 	private static int attemptRemaining;
 
 	public static void main(String[] args) {
@@ -60,7 +64,7 @@ public class WordleClientMain {
 
 					System.out.println(ClientOutputMessage.Welcome);
 
-					startReceivingNotification();
+					startReceivingNotification(connection);
 					
 					while(playGame(connection) != -1) ;
 
@@ -88,12 +92,16 @@ public class WordleClientMain {
 		ByteBuffer buffer = ByteBuffer.allocate(1024);
 		int responseCode;
 		
-		buffer.putInt(ClientRequest.REGISTER);
+		startRequest(ClientRequest.REGISTER, buffer);
 		if (getCredential(buffer) == -1) return -1;
 		
 		try (SocketChannel connection = SocketChannel.open(new InetSocketAddress(host, port))) {	
+			FrameCodec codec = new FrameCodec();
+
 			sendBufferContent(buffer, connection);
-			responseCode = receiveResponseCode(buffer, connection); 
+			responseCode = codec.readFrame(connection).getInt();
+			
+			codec.release();
 		} catch (IOException e) {
 			System.out.println(ClientOutputMessage.ServerConnectionError);
 			return -1;
@@ -112,23 +120,27 @@ public class WordleClientMain {
 		ByteBuffer buffer = ByteBuffer.allocate(1024);
 		SocketChannel connection = null;
 
-		buffer.putInt(ClientRequest.LOGIN);
+		startRequest(ClientRequest.LOGIN, buffer);
 		if (getCredential(buffer) == -1) {
 			return null;
 		}
 
 		connection = SocketChannel.open(new InetSocketAddress(host, port));	
+		connectionCodec = new FrameCodec();
 
 		sendBufferContent(buffer, connection);
-		receiveResponse(buffer, connection);
+		ByteBuffer response = receiveResponse(connection);
 		
-		int responseCode = buffer.getInt();
+		int responseCode = response.getInt();
 		
 		
 		if (responseCode == ServerResponse.FAILURE) {
 			System.out.println(ClientOutputMessage.CredentialError);
+			
+			connection.close();
+			connectionCodec.release();
 		} else {
-			attemptRemaining = 12 - buffer.getInt();
+			attemptRemaining = MAX_ATTEMPTS - response.getInt();
 		}
 
 		return (responseCode == ServerResponse.SUCCESS) ? connection : null;
@@ -161,22 +173,29 @@ public class WordleClientMain {
 			// gestione del tentativo di indovinare una parola
 			while (!done) { 
 				System.out.printf(ClientOutputMessage.RequestWord, attemptRemaining);
-				String word = scanner.nextLine().toLowerCase();
+				String[] words = scanner.nextLine().toLowerCase().trim().split("\\s+");
 				
-				if (word.equals("exit")) {
+				if (words[0].equals("exit")) {
 					done = true;
 					continue;
 				}
 
-				if (!wordValid(word)) {
+				if (words.length > PlayRequest.MAX_WORDS) {
+					System.out.printf(ClientOutputMessage.TooManyWords, PlayRequest.MAX_WORDS);
+					continue;
+				}
+
+				if (!wordsValid(words)) {
 					System.out.println(ClientOutputMessage.VocabularyError);
 					continue;
 				}
 				
-				sendWord(word, buffer, connection);
-				receiveResponse(buffer, connection);
+				PlayRequest play = new PlayRequest(words);
+				play.send(connection);
+
+				ByteBuffer response = receiveResponse(connection);
 				
-				int responseCode = buffer.getInt();
+				int responseCode = response.getInt();
 
 				Boolean waitNextWord = false;
 
@@ -184,21 +203,20 @@ public class WordleClientMain {
 				switch (responseCode) {
 					case ServerResponse.WORD_CHANGED:
 					System.out.println(ClientOutputMessage.WordHasChanged);
-					attemptRemaining = 12;
+					attemptRemaining = MAX_ATTEMPTS;
 					guessed = false;
 					break;
 
 					case ServerResponse.SUCCESS:
-					attemptRemaining--;
+					int resultCount = play.readResults(response);
 
-					byte[] byteArray = new byte[10];
-					buffer.get(byteArray);
-					String response = new String(byteArray);
+					for (int i = 0; i < resultCount; i++) {
+						attemptRemaining--;
+						System.out.printf(ClientOutputMessage.Result, play.getWord(i), play.getResult(i));
+					}
 
-					System.out.printf(ClientOutputMessage.Result, word, response);
-					
-					if (response.equals(WINNING_RESPONSE)) {
-						nextTimeToChange = buffer.getLong();
+					if (play.guessed()) {
+						nextTimeToChange = play.getNextWordChangeTime();
 						System.out.println(ClientOutputMessage.WordGuessed);
 						
 						attemptRemaining = 0;
@@ -209,7 +227,7 @@ public class WordleClientMain {
 					break;
 
 					case ServerResponse.FAILURE:
-					nextTimeToChange = buffer.getLong();
+					nextTimeToChange = response.getLong();
 					
 					minuteRemaining = (int) (((nextTimeToChange - System.currentTimeMillis()) / 1000) / 60);
 					
@@ -231,6 +249,7 @@ public class WordleClientMain {
 
 					if (choice.toUpperCase().equals("Y")) {
 						sendCode(ClientRequest.SHARE, buffer, connection);
+						receiveResponse(connection); // ServerResponse.SUCCESS, la partita appena conclusa è sempre presente
 					}
 
 					System.out.print(ClientOutputMessage.RequestWaitNextWord);
@@ -249,10 +268,10 @@ public class WordleClientMain {
 					System.out.printf(ClientOutputMessage.WaitingMessage, minuteRemaining);
 					
 					sendCode(ClientRequest.WAITING_NEXT_WORD, buffer, connection);
-					receiveResponseCode(buffer, connection);
+					receiveResponse(connection);
 
 					guessed = false;
-					attemptRemaining = 12;
+					attemptRemaining = MAX_ATTEMPTS;
 				}
 
 				backToMainMenu = 0;
@@ -260,28 +279,63 @@ public class WordleClientMain {
 			break;
 
 			case UserChoice.GET_NOTIFICATION:
+			if (sharesOverConnection) { // le condivisioni in attesa sul server arrivano prima della risposta
+				sendCode(ClientRequest.POLL_SHARES, buffer, connection);
+				receiveResponse(connection);
+			}
+
 			notificationHandler.printNotification();
 			backToMainMenu = 0;
 			break;
 			
 			case UserChoice.GET_STATISTICS:
-			sendCode(ClientRequest.SEND_STATISTICS, buffer, connection);
-			buffer.clear();
-			ObjectInputStream objectInputStream = new ObjectInputStream(connection.socket().getInputStream());
+			sendCode(ClientRequest.SEND_STATISTICS_SUMMARY, buffer, connection);
 			
-			try {
-				ArrayList<GameRecord> records = ((GameHistory) objectInputStream.readObject()).getRecords();
-				printStatistics(records);
-			} catch (ClassNotFoundException e) {
-				e.printStackTrace();
+			ByteBuffer statistics = receiveResponse(connection);
+			statistics.getInt(); // ServerResponse.SUCCESS
+			UserStatistics userStatistics = UserStatistics.readFrom(statistics);
+			printStatistics(userStatistics);
+
+			if (userStatistics.getGamesPlayed() > 0) {
+				System.out.print(ClientOutputMessage.RequestHistory);
+
+				if (scanner.nextLine().toUpperCase().equals("Y")) {
+					printHistory(buffer, connection);
+				}
 			}
 
 			backToMainMenu = 0;
 			break;
 
+			case UserChoice.LEADERBOARD:
+			startRequest(ClientRequest.LEADERBOARD, buffer);
+			buffer.putInt(LEADERBOARD_SIZE);
+			sendBufferContent(buffer, connection);
+
+			printLeaderboard(receiveResponse(connection));
+			backToMainMenu = 0;
+			break;
+
+			case UserChoice.WORD_RESULTS:
+			System.out.print(ClientOutputMessage.RequestResultsWord);
+			String pastWord = scanner.nextLine().toLowerCase().trim();
+
+			startRequest(ClientRequest.WORD_RESULTS, buffer);
+			if (!pastWord.isEmpty()) {
+				byte[] pastWordBytes = pastWord.getBytes(StandardCharsets.UTF_8);
+				buffer.putInt(pastWordBytes.length);
+				buffer.put(pastWordBytes);
+			}
+			sendBufferContent(buffer, connection);
+
+			printWordResults(receiveResponse(connection));
+			backToMainMenu = 0;
+			break;
+
 			case UserChoice.LOGOUT:
 			sendCode(ClientRequest.LOGOUT, buffer, connection);
 			connection.close();
+			connectionCodec.release();
 			notificationHandler.stop();
 			backToMainMenu = -1;
 			break;
@@ -301,28 +355,50 @@ public class WordleClientMain {
 		public static final int PLAY = 1;
 		public static final int GET_NOTIFICATION = 2;
 		public static final int GET_STATISTICS = 3;
-		public static final int LOGOUT = 4;
+		public static final int LEADERBOARD = 4;
+		public static final int WORD_RESULTS = 5;
+		public static final int LOGOUT = 6;
 
 	}
 
 	/**
-	 * Metodo che avvia il thread per la ricezione delle notifiche
+	 * Metodo che avvia la ricezione delle notifiche: se il server invia le condivisioni sulle connessioni TCP
+	 * il client si iscrive, altrimenti avvia il thread che le riceve dal gruppo multicast
+	 * @param connection connessione con il server
+	 * @throws IOException
 	 */
-	private static void startReceivingNotification() {
-		notificationHandlerThread = new Thread(notificationHandler);
+	private static void startReceivingNotification(SocketChannel connection) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+
+		sendCode(ClientRequest.SUBSCRIBE_SHARES, buffer, connection);
+		sharesOverConnection = receiveResponse(connection).getInt() == ServerResponse.SUCCESS;
+
+		if (sharesOverConnection) return;
 
-		notificationHandlerThread.start();
+		notificationHandler.start();
+	}
+
+	/**
+	 * Metodo che pulisce il buffer e inizia il frame di una nuova richiesta inserendone il codice
+	 * @param code codice della richiesta
+	 * @param buffer da riempire con i dati da inviare
+	 */
+	private static void startRequest(int code, ByteBuffer buffer) {
+		buffer.clear();
+		FrameCodec.beginFrame(buffer);
+		buffer.putInt(code);
 	}
 
 	/**
-	 * Metodo che invia prepara il buffer per la lettura e invia il suo contenuto alla SocketChannel connection
+	 * Metodo che chiude il frame iniziato con startRequest, prepara il buffer per la lettura e invia il suo contenuto alla SocketChannel connection
 	 * @param buffer contenente i dati da inviare
 	 * @param connection connessione a cui inviare i dati contenuti nel buffer
 	 * @throws IOException
 	 */
 	private static int sendBufferContent(ByteBuffer buffer, SocketChannel connection) throws IOException {		
+		FrameCodec.endFrame(buffer, 0);
 		buffer.flip();
-		connection.write(buffer);
+		FrameCodec.writeFully(buffer, connection);
 		buffer.clear();
 		
 		return 0;
@@ -356,6 +432,19 @@ public class WordleClientMain {
 		return 0;
 	}
 
+	/**
+	 * Metodo che controlla se tutte le parole inserite dall'utente sono valide
+	 * @param words parole da controllare
+	 * @return true se tutte le parole sono valide, false altrimenti
+	 */
+	private static Boolean wordsValid(String[] words) {
+		for (String word : words) {
+			if (!wordValid(word)) return false;
+		}
+
+		return true;
+	}
+
 	/**
 	 * Metodo che controlla se la parola inserita dall'utente è valida, quindi se è presente nel dizionario e se è lunga 10 caratteri
 	 * @param word parola da controllare
@@ -366,90 +455,143 @@ public class WordleClientMain {
 	}
 
 	/**
-	 * Metodo che invia la parola da indovinare al server insieme a un codice che indica l'invio di una parola
-	 * @param word parola da inviare
+	 * Metodo che invia il codice di richiesta al server
+	 * @param code codice da inviare
 	 * @param buffer da riempire con i dati da inviare
 	 * @param connection connessione a cui inviare i dati contenuti nel buffer
 	 * @throws IOException
 	 */
-	private static void sendWord(String word, ByteBuffer buffer, SocketChannel connection) throws IOException {
-		buffer.clear();
-		buffer.putInt(ClientRequest.PLAY);
-		buffer.put(word.getBytes());
-
+	private static void sendCode(int code, ByteBuffer buffer, SocketChannel connection) throws IOException {
+		startRequest(code, buffer);
 		sendBufferContent(buffer, connection);
 	}
 
 	/**
-	 * Metodo che invia il codice di richiesta al server
-	 * @param code codice da inviare
-	 * @param buffer da riempire con i dati da inviare
-	 * @param connection connessione a cui inviare i dati contenuti nel buffer
+	 * Metodo che riceve la prossima risposta dal server, attendendo che arrivi completamente.
+	 * I frame SHARES inviati dal server prima della risposta vengono passati al NotificationHandler
+	 * @param connection connessione da cui ricevere i dati
+	 * @return buffer contenente la risposta, valido fino alla ricezione della risposta successiva
 	 * @throws IOException
 	 */
-	private static void sendCode(int code, ByteBuffer buffer, SocketChannel connection) throws IOException {
-		buffer.clear();
-		buffer.putInt(code);
-		buffer.flip();
+	private static ByteBuffer receiveResponse(SocketChannel connection) throws IOException {
+		ByteBuffer response = connectionCodec.readFrame(connection);
+
+		while (response.getInt(response.position()) == ServerResponse.SHARES) {
+			response.getInt();
+			notificationHandler.addMessages(response);
+
+			response = connectionCodec.readFrame(connection);
+		}
 
-		connection.write(buffer);
+		return response;
 	}
 
 	/**
-	 * Metodo che riceve la risposta dal server e la inserisce nel buffer
-	 * @param buffer da riempire con i dati ricevuti
-	 * @param connection connessione da cui ricevere i dati
+	 * Metodo che richiede al server lo storico delle partite una pagina alla volta e lo stampa,
+	 * chiedendo all'utente se proseguire dopo ogni pagina
+	 * @param buffer da riempire con i dati da inviare
+	 * @param connection connessione con il server
 	 * @throws IOException
 	 */
-	private static void receiveResponse(ByteBuffer buffer, SocketChannel connection) throws IOException {
-		buffer.clear();
-		connection.read(buffer);
-		buffer.flip();
+	private static void printHistory(ByteBuffer buffer, SocketChannel connection) throws IOException {
+		int offset = 0;
+		Boolean nextPage = true;
+
+		while (nextPage) {
+			startRequest(ClientRequest.SEND_STATISTICS, buffer);
+			buffer.putInt(offset);
+			buffer.putInt(HISTORY_PAGE_SIZE);
+			sendBufferContent(buffer, connection);
+
+			ByteBuffer response = receiveResponse(connection);
+			response.getInt(); // ServerResponse.SUCCESS
+			GameHistory page = GameHistory.readPage(response);
+
+			for (GameRecord record : page.getRecords()) {
+				System.out.printf(ClientOutputMessage.StatisticRecord, record.getWordToGuess(), record.getAttemptsCount(), Boolean.TRUE.equals(record.guessed()) ? "indovinata" : "non indovinata");
+			}
+
+			offset = page.getOffset() + page.getRecords().size();
+			nextPage = page.hasNextPage() && !page.getRecords().isEmpty();
+
+			if (nextPage) {
+				System.out.printf(ClientOutputMessage.RequestNextHistoryPage, page.getOffset() + 1, offset, page.getTotalCount());
+				nextPage = scanner.nextLine().toUpperCase().equals("Y");
+			}
+		}
 	}
 
 	/**
-	 * Metodo che riceve il codice di risposta dal server e la inserisce nel buffer
-	 * @param buffer da riempire con il codice ricevuto
-	 * @param connection connessione da cui ricevere i dati
-	 * @return il codice di risposta ricevuto dal server
-	 * @throws IOException
+	 * Metodo che stampa la classifica ricevuta dal server e la posizione dell'utente
+	 * @param response risposta del server alla richiesta LEADERBOARD
 	 */
-	private static int receiveResponseCode(ByteBuffer buffer, SocketChannel connection) throws IOException {
-		buffer.clear();
-		connection.read(buffer);
-		buffer.flip();
+	private static void printLeaderboard(ByteBuffer response) {
+		response.getInt(); // ServerResponse.SUCCESS
+		int rankedCount = response.getInt();
+		Leaderboard.Entry userEntry = Leaderboard.Entry.readFrom(response);
+		int count = response.getInt();
 
-		int responseCode = buffer.getInt();
+		System.out.printf(ClientOutputMessage.LeaderboardTitle, rankedCount);
 
-		return responseCode;
+		for (int i = 0; i < count; i++) {
+			Leaderboard.Entry entry = Leaderboard.Entry.readFrom(response);
+			System.out.printf(ClientOutputMessage.LeaderboardEntry, entry.getRank(), entry.getUsername(), entry.getWins(), entry.getAverageAttempts());
+		}
+
+		if (userEntry.getRank() == 0) {
+			System.out.println(ClientOutputMessage.LeaderboardNotRanked);
+		} else {
+			System.out.printf(ClientOutputMessage.LeaderboardUserRank, userEntry.getRank());
+		}
 	}
 
 	/**
-	 * Metodo che stampa le statistiche di gioco dell'utente
-	 * @param records lista delle partite giocate dall'utente
+	 * Metodo che stampa la distribuzione dei risultati di tutti i giocatori su una parola
+	 * @param response risposta del server alla richiesta WORD_RESULTS
 	 */
-	private static void printStatistics(ArrayList<GameRecord> records) {
-		int[] winningDistribution = new int[12];
-		int winCount = 0;
-		int loseCount = 0;
-
-		for (GameRecord record : records) {
-			if (record.guessed()) {
-				winCount++;
-				winningDistribution[record.getAttemptsCount()-1]++;
-			} else {
-				loseCount++;
-			}
+	private static void printWordResults(ByteBuffer response) {
+		if (response.getInt() == ServerResponse.FAILURE) {
+			System.out.println(ClientOutputMessage.WordResultsNotFound);
+			return;
+		}
+
+		int[] counts = WordHistogram.readCounts(response);
+		int total = 0;
+		int maxCount = 1;
+
+		for (int i = 0; i < WordHistogram.MAX_ATTEMPTS; i++) maxCount = Math.max(maxCount, counts[i]);
+
+		System.out.println(ClientOutputMessage.WordResultsTitle);
+
+		// le barre vengono scalate, i giocatori possono essere migliaia
+		for (int i = 0; i < WordHistogram.MAX_ATTEMPTS; i++) {
+			System.out.print((i+1) + ": " + counts[i] + "\t");
+			
+			for (int j = 0; j < (int) ((long) counts[i] * WORD_RESULTS_BAR_WIDTH / maxCount); j++) System.out.print("|");
+			System.out.print("\n");
+
+			total += counts[i];
 		}
 
-		for (int i = 0; i < winningDistribution.length; i++) {
-			System.out.print((i+1) + ": " + winningDistribution[i] + "\t");
+		int failures = counts[WordHistogram.MAX_ATTEMPTS];
+		System.out.printf(ClientOutputMessage.WordResultsFailures, total + failures, failures);
+	}
+
+	/**
+	 * Metodo che stampa le statistiche di gioco dell'utente
+	 * @param statistics statistiche calcolate dal server
+	 */
+	private static void printStatistics(UserStatistics statistics) {
+		for (int i = 1; i <= UserStatistics.MAX_ATTEMPTS; i++) {
+			int guessCount = statistics.getGuessCount(i);
+			System.out.print(i + ": " + guessCount + "\t");
 			
-			for (int j = 0; j < winningDistribution[i]; j++) System.out.print("|");
+			for (int j = 0; j < guessCount; j++) System.out.print("|");
 			System.out.print("\n");
 		}
 
-		System.out.printf(ClientOutputMessage.WinAndLoseCounts, winCount, loseCount);
+		System.out.printf(ClientOutputMessage.WinAndLoseCounts, statistics.getWins(), statistics.getLosses());
+		System.out.printf(ClientOutputMessage.StreakCounts, statistics.getGamesPlayed(), statistics.getCurrentStreak(), statistics.getMaxStreak());
 	}
 
 	/**
@@ -492,6 +634,6 @@ public class WordleClientMain {
 		}
 
 		vocabulary = new Vocabulary(vocabularyFileName);
-		notificationHandler = new NotificationHandler(multicastAddress, port);
+		notificationHandler = new NotificationHandler(multicastAddress, port, vocabulary);
 	}
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Classe che rappresenta i dati del gioco
@@ -17,15 +19,33 @@ public class WordleData {
 	
 	private ArrayList<User> user;
 	
-	private ArrayList<String> notificationSended;
+	private transient NotificationLog<String> notificationSended; // ultime notifiche inviate, nel backup viene salvato solo il loro testo
+
+	private long walGeneration; // primo segmento del log da riapplicare dopo il caricamento del backup
+
+	private transient WriteAheadLog writeAheadLog;
+	private final transient Object backupLock = new Object();
+	private transient String backupFormat = BACKUP_FORMAT_JSON;
+	private transient Vocabulary vocabulary; // utilizzato per codificare le parole nel backup binario
+
+	public static final String BACKUP_FORMAT_JSON = "json";
+	public static final String BACKUP_FORMAT_COMPACT = "compact";
+	public static final String BACKUP_FORMAT_BINARY = "binary";
+
+	public static final int NOTIFICATION_CAPACITY = 1024; // numero massimo di notifiche mantenute e salvate nel backup
+	public static final long NOTIFICATION_MAX_AGE = 24 * 60 * 60 * 1000; // età massima delle notifiche mantenute
+	private transient volatile SecretProfile secretProfile;
+	private transient volatile ConcurrentHashMap<String, User> userIndex; // indice degli utenti per username, non viene salvato nel backup
+	private transient volatile Leaderboard leaderboard; // classifica degli utenti, non viene salvata nel backup
+	private transient volatile WordResults wordResults; // risultati delle partite per parola, ricostruiti dallo storico degli utenti
 
 	/**
 	 * Costruttore della classe.
-	 * Inizializza le liste user e notificationSended, e imposta il tempo di aggiornamento della parola segreta in modo tale che venga aggiornata subito
+	 * Inizializza la lista user e il registro notificationSended, e imposta il tempo di aggiornamento della parola segreta in modo tale che venga aggiornata subito
 	 */
 	public WordleData() {
 		user = new ArrayList<>();
-		notificationSended = new ArrayList<>();
+		notificationSended = new NotificationLog<>(NOTIFICATION_CAPACITY, NOTIFICATION_MAX_AGE);
 
 		nextWordChangeTime = System.currentTimeMillis();
 	}
@@ -40,51 +60,309 @@ public class WordleData {
 	}
 
 	/**
-	 * Metodo che effettua il backup dei dati del gioco
-	 * implementato in modo sincronizzato per evitare problemi di concorrenza
-	 * @param backupFileName nome del file di backup
+	 * Metodo che associa ai dati il log su cui vengono registrate le modifiche,
+	 * da chiamare dopo aver riapplicato il log al backup caricato
+	 * @param writeAheadLog log delle modifiche
+	 */
+	public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+		this.writeAheadLog = writeAheadLog;
+	}
+
+	/**
+	 * Metodo che restituisce la generazione del primo segmento del log non contenuto nel backup
+	 * @return generazione del primo segmento da riapplicare
 	 */
-	public synchronized void doBackup(String backupFileName) {
-		File backupFile = new File(backupFileName);
+	public long getWalGeneration() {
+		return walGeneration;
+	}
 
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		
-		try {
-			FileWriter fileWriter = new FileWriter(backupFile);
-			fileWriter.write(gson.toJson(this));
+	/**
+	 * Metodo che imposta il formato dei backup successivi
+	 * @param backupFormat BACKUP_FORMAT_JSON (JSON indentato), BACKUP_FORMAT_COMPACT (JSON su una sola riga) oppure BACKUP_FORMAT_BINARY
+	 * @param vocabulary dizionario utilizzato per codificare le parole nel backup binario
+	 */
+	public void setBackupFormat(String backupFormat, Vocabulary vocabulary) {
+		this.backupFormat = backupFormat;
+		this.vocabulary = vocabulary;
+	}
+
+	/**
+	 * Metodo che effettua il backup dei dati del gioco.
+	 * Il monitor viene acquisito solo per copiare lo stato corrente e passare a un nuovo segmento del log,
+	 * la copia viene poi scritta senza bloccare le sessioni su un file temporaneo che sostituisce quello precedente,
+	 * infine vengono eliminati i segmenti del log ormai contenuti nel backup.
+	 * Il backup nell'altro formato, ormai superato, viene rinominato aggiungendo l'estensione ".old" in modo che non venga più caricato.
+	 * Due backup non vengono mai scritti contemporaneamente
+	 * @param backupFileName nome del file di backup JSON, il backup binario ha lo stesso nome con estensione ".bin"
+	 */
+	public void doBackup(String backupFileName) {
+		synchronized (backupLock) {
+			Boolean binary = backupFormat.equals(BACKUP_FORMAT_BINARY);
+
+			File backupFile = binary ? BinaryBackup.fileFor(backupFileName) : new File(backupFileName);
+			File staleBackupFile = binary ? new File(backupFileName) : BinaryBackup.fileFor(backupFileName);
+			File temporaryFile = new File(backupFile.getPath() + ".tmp");
 
-			fileWriter.close();
-		} catch (IOException e) {
-			System.out.println("Si è verificato un problema nel salvataggio dei dati");
+			try {
+				WordleData snapshot = snapshot();
+
+				if (binary) {
+					BinaryBackup.save(snapshot, temporaryFile, vocabulary);
+				} else {
+					JsonBackup.save(snapshot, temporaryFile, backupFormat.equals(BACKUP_FORMAT_JSON));
+				}
+
+				Files.move(temporaryFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+				if (staleBackupFile.length() > 0) {
+					Files.move(staleBackupFile.toPath(), new File(staleBackupFile.getPath() + ".old").toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+
+				if (writeAheadLog != null) {
+					writeAheadLog.deleteSegmentsBefore(snapshot.walGeneration);
+				}
+			} catch (IOException e) {
+				System.out.println("Si è verificato un problema nel salvataggio dei dati");
+			}
 		}
 	}
 
 	/**
-	 * Metodo che aggiunge un nuovo utente alla lista user
-	 * implementato in modo sincronizzato per evitare problemi di concorrenza
+	 * Metodo che restituisce una copia dello stato corrente dei dati, da cui scrivere il backup
+	 * implementato in modo sincronizzato per evitare problemi di concorrenza.
+	 * Le partite giocate sono immutabili, quindi vengono copiate solo le liste che le contengono
+	 * @return copia dei dati del gioco
+	 * @throws IOException se non è stato possibile passare a un nuovo segmento del log
+	 */
+	private synchronized WordleData snapshot() throws IOException {
+		if (writeAheadLog != null) {
+			walGeneration = writeAheadLog.nextSegment();
+		}
+
+		WordleData snapshot = new WordleData();
+
+		snapshot.currentSecreteWord = currentSecreteWord;
+		snapshot.nextWordChangeTime = nextWordChangeTime;
+		snapshot.walGeneration = walGeneration;
+
+		snapshot.user.ensureCapacity(user.size());
+		user.forEach((user) -> snapshot.user.add(user.copy()));
+
+		for (NotificationLog.Notification<String> notification : notificationSended.readAfter(0)) {
+			snapshot.notificationSended.add(notification.getMessage(), notification.getTimestamp());
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Metodo che scrive i dati come documento JSON, con gli stessi campi e lo stesso ordine utilizzati da Gson.
+	 * Gli utenti vengono scritti uno alla volta
+	 * @param writer JsonWriter su cui scrivere
+	 * @throws IOException
+	 */
+	void writeJson(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		if (currentSecreteWord != null) writer.name("currentSecreteWord").value(currentSecreteWord);
+		writer.name("nextWordChangeTime").value(nextWordChangeTime);
+
+		if (user != null) {
+			writer.name("user").beginArray();
+			for (User user : user) {
+				user.writeJson(writer);
+			}
+			writer.endArray();
+		}
+
+		writer.name("notificationSended").beginArray();
+		for (NotificationLog.Notification<String> notification : notificationSended.readAfter(0)) {
+			writer.value(notification.getMessage());
+		}
+		writer.endArray();
+
+		writer.name("walGeneration").value(walGeneration);
+		writer.endObject();
+	}
+
+	/**
+	 * Metodo che legge i dati da un documento JSON, i campi sconosciuti vengono ignorati
+	 * @param reader JsonReader da cui leggere
+	 * @return dati del gioco
+	 * @throws IOException
+	 */
+	static WordleData readJson(JsonReader reader) throws IOException {
+		WordleData data = new WordleData();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "currentSecreteWord": data.currentSecreteWord = JsonBackup.nextString(reader); break;
+				case "nextWordChangeTime": data.nextWordChangeTime = reader.nextLong(); break;
+				case "walGeneration": data.walGeneration = reader.nextLong(); break;
+
+				case "user":
+				if (JsonBackup.skipNull(reader)) break;
+
+				reader.beginArray();
+				while (reader.hasNext()) {
+					data.user.add(User.readJson(reader));
+				}
+				reader.endArray();
+				break;
+
+				case "notificationSended":
+				if (JsonBackup.skipNull(reader)) break;
+
+				reader.beginArray();
+				while (reader.hasNext()) {
+					data.notificationSended.add(JsonBackup.nextString(reader));
+				}
+				reader.endArray();
+				break;
+
+				default: reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return data;
+	}
+
+	/**
+	 * Metodo che scrive i dati nel backup binario: generazione del log, parola segreta, momento del prossimo cambio,
+	 * utenti e notifiche inviate
+	 * @param output backup binario su cui scrivere
+	 * @throws IOException
+	 */
+	void writeBinary(BinaryBackup output) throws IOException {
+		output.putLong(walGeneration);
+		output.putWord(currentSecreteWord);
+		output.putLong(nextWordChangeTime);
+
+		output.putVarint(user.size());
+		for (User user : user) {
+			user.writeBinary(output);
+		}
+
+		ArrayList<NotificationLog.Notification<String>> notifications = notificationSended.readAfter(0);
+
+		output.putVarint(notifications.size());
+		for (NotificationLog.Notification<String> notification : notifications) {
+			output.putString(notification.getMessage());
+		}
+	}
+
+	/**
+	 * Metodo che legge i dati dal backup binario
+	 * @param input backup binario da cui leggere
+	 * @return dati del gioco
+	 */
+	static WordleData readBinary(BinaryBackup input) {
+		WordleData data = new WordleData();
+
+		data.walGeneration = input.getLong();
+		data.currentSecreteWord = input.getWord();
+		data.nextWordChangeTime = input.getLong();
+
+		int userCount = input.getVarint();
+		data.user.ensureCapacity(Math.min(userCount, input.remaining() / User.MIN_BINARY_SIZE));
+
+		for (int i = 0; i < userCount; i++) {
+			data.user.add(User.readBinary(input));
+		}
+
+		int notificationCount = input.getVarint();
+
+		for (int i = 0; i < notificationCount; i++) {
+			data.notificationSended.add(input.getString());
+		}
+
+		return data;
+	}
+
+	/**
+	 * Metodo che aggiunge un nuovo utente, se non esiste già un utente con lo stesso username.
+	 * Il controllo e l'inserimento nell'indice avvengono in modo atomico, il monitor viene acquisito solo
+	 * per aggiungere l'utente alla lista user salvata nel backup e accodare il nuovo utente nel log
 	 * @param username username dell'utente
 	 * @param password password dell'utente
 	 * @param attempt numero di tentativi rimasti
 	 * @param wordGuessed indica se l'utente ha indovinato la parola segreta
+	 * @return true se l'utente è stato aggiunto, false se l'username era già presente
 	 */
-	public synchronized void newUser(String username, String password, int attempt, Boolean wordGuessed) {
-		user.add(new User(username, password, attempt, wordGuessed));
+	public Boolean newUser(String username, String password, int attempt, Boolean wordGuessed) {
+		return newUser(username, password, attempt, wordGuessed, null);
 	}
 
 	/**
-	 * Metodo che controlla se l'utente è già presente nella lista user
-	 * implementato in modo sincronizzato per evitare problemi di concorrenza
+	 * Metodo che aggiunge un nuovo utente come newUser(), senza attendere che sia stato reso persistente:
+	 * onDurable viene eseguita dal thread del log quando il nuovo utente è persistente (subito se il log non è attivo)
 	 * @param username username dell'utente
-	 * @return true se l'utente è già presente, false altrimenti
+	 * @param password password dell'utente
+	 * @param attempt numero di tentativi rimasti
+	 * @param wordGuessed indica se l'utente ha indovinato la parola segreta
+	 * @param onDurable operazione da eseguire quando il nuovo utente è persistente, può essere null
+	 * @return true se l'utente è stato aggiunto, false se l'username era già presente o il log delle modifiche è pieno
 	 */
-	public synchronized Boolean usernameAlreadyPresent(String username) {
-		for (int i = 0; i < user.size(); i++) {
-			if (user.get(i).getUsername().equals(username)) {
-				return true;
+	public Boolean newUser(String username, String password, int attempt, Boolean wordGuessed, Runnable onDurable) {
+		User newUser = new User(username, password, attempt, wordGuessed);
+
+		if (userIndex().putIfAbsent(username, newUser) != null) {
+			return false;
+		}
+
+		long sequence = 0;
+
+		synchronized (this) {
+			user.add(newUser);
+
+			if (writeAheadLog != null) {
+				sequence = writeAheadLog.appendNewUser(username, password);
+			}
+
+			if (sequence == WriteAheadLog.REJECTED) { // il log è pieno, la registrazione non riesce
+				user.remove(newUser);
+				userIndex().remove(username, newUser);
+
+				return false;
 			}
 		}
-	
-		return false;
+
+		if (onDurable == null) return true;
+
+		if (writeAheadLog != null) {
+			writeAheadLog.whenDurable(sequence, onDurable);
+		} else {
+			onDurable.run();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Metodo che registra una partita conclusa nelle statistiche dell'utente e la accoda nel log
+	 * implementato in modo sincronizzato per evitare problemi di concorrenza
+	 * @param user utente che ha concluso la partita
+	 * @param word parola che l'utente ha cercato di indovinare
+	 */
+	public synchronized void addGameRecord(User user, String word) {
+		user.updateStats(word);
+		updateLeaderboard(user);
+
+		if (writeAheadLog != null) {
+			PackedGameHistory history = user.getHistory();
+			writeAheadLog.appendGameRecord(user.getUsername(), word, user.getAttempt(), user.wordGuessed(), history.getTimestamp(history.size() - 1));
+		}
+	}
+
+	/**
+	 * Metodo che controlla se l'utente è già presente
+	 * 
+	 * @param username username dell'utente
+	 * @return true se l'utente è già presente, false altrimenti
+	 */
+	public Boolean usernameAlreadyPresent(String username) {
+		return userIndex().containsKey(username);
 	}
 
 	/**
@@ -111,26 +389,154 @@ public class WordleData {
 	 * @return utente con username uguale a quello passato come parametro se presente nella lista user, null altrimenti
 	 */
 	public User getUser(String username) {
-		for (int i = 0; i < user.size(); i++) {
-			if (user.get(i).getUsername().equals(username)) {
-				return user.get(i);
+		return userIndex().get(username);
+	}
+
+	/**
+	 * Metodo che restituisce l'indice degli utenti per username.
+	 * Dopo il caricamento dal backup l'indice non esiste ancora e viene costruito una sola volta a partire dalla lista user
+	 * @return indice degli utenti
+	 */
+	private ConcurrentHashMap<String, User> userIndex() {
+		ConcurrentHashMap<String, User> index = userIndex;
+
+		if (index == null) { // dati appena caricati dal backup
+			synchronized (this) {
+				if (userIndex == null) {
+					if (user == null) {
+						user = new ArrayList<>();
+					}
+
+					ConcurrentHashMap<String, User> newIndex = new ConcurrentHashMap<>(Math.max(user.size() * 2, 16));
+					user.forEach((user) -> newIndex.putIfAbsent(user.getUsername(), user));
+					userIndex = newIndex;
+				}
+				index = userIndex;
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Metodo che restituisce la classifica degli utenti.
+	 * Dopo il caricamento dal backup la classifica non esiste ancora e viene costruita una sola volta
+	 * a partire dalle statistiche degli utenti
+	 * @return classifica degli utenti
+	 */
+	public Leaderboard getLeaderboard() {
+		Leaderboard board = leaderboard;
+
+		if (board == null) { // dati appena caricati dal backup
+			synchronized (this) {
+				if (leaderboard == null) {
+					Leaderboard newBoard = new Leaderboard();
+
+					for (User user : userIndex().values()) {
+						UserStatistics statistics = user.getStatistics();
+
+						if (statistics.getGamesPlayed() > 0) {
+							newBoard.update(user.getUsername(), statistics.getWins(), statistics.getWinningAttempts());
+						}
+					}
+
+					leaderboard = newBoard;
+				}
+				board = leaderboard;
+			}
+		}
+
+		return board;
+	}
+
+	/**
+	 * Metodo che restituisce i risultati delle partite per parola.
+	 * Dopo il caricamento dal backup i risultati non esistono ancora e vengono ricostruiti una sola volta
+	 * dallo storico degli utenti: l'ultima partita di un utente conta per la parola attuale se è stata giocata su di essa,
+	 * tutte le altre partite vengono archiviate
+	 * @return risultati delle partite per parola
+	 */
+	public WordResults getWordResults() {
+		WordResults results = wordResults;
+
+		if (results == null) { // dati appena caricati dal backup
+			synchronized (this) {
+				if (wordResults == null) {
+					WordResults newResults = new WordResults(currentSecreteWord);
+
+					for (User user : userIndex().values()) {
+						PackedGameHistory history = user.getHistory();
+
+						for (int i = 0; i < history.size(); i++) {
+							String word = history.getWordToGuess(i);
+
+							if (word == null) continue;
+
+							if (i == history.size() - 1 && word.equals(currentSecreteWord)) {
+								newResults.restoreCurrent(history.getAttemptsCount(i), history.guessed(i));
+							} else {
+								newResults.addArchived(word, history.getAttemptsCount(i), history.guessed(i));
+							}
+						}
+					}
+
+					wordResults = newResults;
+				}
+				results = wordResults;
 			}
 		}
 
-		return null;
+		return results;
+	}
+
+	/**
+	 * Metodo che aggiorna la posizione in classifica dell'utente dopo una partita conclusa
+	 * @param user utente che ha concluso la partita
+	 */
+	private void updateLeaderboard(User user) {
+		UserStatistics statistics = user.getStatistics();
+
+		getLeaderboard().update(user.getUsername(), statistics.getWins(), statistics.getWinningAttempts());
 	}
 
 	/**
 	 * Metodo che imposta la parola segreta e il tempo di aggiornamento della parola segreta, inoltre resetta lo stato di tutti gli utenti
+	 * e pubblica il nuovo profilo della parola segreta
 	 * implementato in modo sincronizzato per evitare problemi di concorrenza
 	 * @param newWord nuova parola segreta
 	 * @param wordLifeTime intervallo di aggiornamento della parola segreta
 	 */
 	public synchronized void setSecreteWord(String newWord, long wordLifeTime) {
+		getWordResults().rotate(newWord);
 		user.forEach((user) -> user.reset());
 
 		this.currentSecreteWord = newWord;
 		this.nextWordChangeTime = System.currentTimeMillis() + wordLifeTime;
+		this.secretProfile = new SecretProfile(newWord, nextWordChangeTime);
+
+		if (writeAheadLog != null) {
+			writeAheadLog.appendWordChange(newWord, nextWordChangeTime);
+		}
+	}
+
+	/**
+	 * Metodo che restituisce il profilo della parola segreta corrente, pubblicato a ogni cambio di parola.
+	 * Non è sincronizzato: le sessioni leggono il profilo tramite un unico riferimento volatile
+	 * @return profilo della parola segreta, null se la parola non è ancora stata scelta
+	 */
+	public SecretProfile getSecretProfile() {
+		SecretProfile profile = secretProfile;
+
+		if (profile == null && currentSecreteWord != null) { // dati appena caricati dal backup
+			synchronized (this) {
+				if (secretProfile == null) {
+					secretProfile = new SecretProfile(currentSecreteWord, nextWordChangeTime);
+				}
+				profile = secretProfile;
+			}
+		}
+
+		return profile;
 	}
 
 	/**
@@ -169,13 +575,76 @@ public class WordleData {
 	}
 
 	/**
-	 * Metodo che aggiunge una notifica alla lista notificationSended
+	 * Metodo che aggiunge una notifica al registro notificationSended, sostituendo la più vecchia se è pieno, e la accoda nel log.
+	 * Il registro non richiede lock, il monitor serve solo a mantenere l'ordine tra registro e log rispetto ai backup
 	 * @param notification notifica da aggiungere
 	 */
-	public void addNotification(String notification) {
-		if (notificationSended == null) {
-			notificationSended = new ArrayList<>();
-		}
+	public synchronized void addNotification(String notification) {
 		notificationSended.add(notification);
+
+		if (writeAheadLog != null) {
+			writeAheadLog.appendNotification(notification);
+		}
+	}
+
+	/**
+	 * Metodo che riapplica un nuovo utente letto dal log
+	 * @param username username dell'utente
+	 * @param password password dell'utente
+	 */
+	void restoreUser(String username, String password) {
+		newUser(username, password, 0, false);
+	}
+
+	/**
+	 * Metodo che riapplica una partita conclusa letta dal log, se la partita riguarda la parola segreta corrente
+	 * viene ripristinato anche lo stato della partita dell'utente
+	 * @param username username dell'utente
+	 * @param word parola che l'utente ha cercato di indovinare
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param timestamp momento di fine partita in millisecondi, 0 se sconosciuto
+	 */
+	void restoreGameRecord(String username, String word, int attemptsCount, Boolean guessed, long timestamp) {
+		User user = getUser(username);
+
+		if (user == null) return;
+
+		user.addGameRecord(attemptsCount, guessed, word, timestamp);
+		updateLeaderboard(user);
+
+		if (word.equals(currentSecreteWord)) {
+			user.restoreGame(attemptsCount, guessed);
+		}
+	}
+
+	/**
+	 * Metodo che restituisce le notifiche inviate successive alla sequenza indicata
+	 * @param sequence ultima sequenza già letta, 0 per leggere tutte le notifiche mantenute
+	 * @return notifiche successive alla sequenza indicata
+	 */
+	public ArrayList<NotificationLog.Notification<String>> getNotificationsAfter(long sequence) {
+		return notificationSended.readAfter(sequence);
+	}
+
+	/**
+	 * Metodo che riapplica una notifica letta dal log
+	 * @param notification notifica inviata
+	 */
+	void restoreNotification(String notification) {
+		addNotification(notification);
+	}
+
+	/**
+	 * Metodo che riapplica un cambio della parola segreta letto dal log
+	 * @param word parola segreta
+	 * @param nextWordChangeTime momento del prossimo aggiornamento della parola segreta
+	 */
+	void restoreSecreteWord(String word, long nextWordChangeTime) {
+		user.forEach((user) -> user.reset());
+
+		this.currentSecreteWord = word;
+		this.nextWordChangeTime = nextWordChangeTime;
+		this.secretProfile = null;
 	}
 }
\ No newline at end of file
@@ -7,19 +7,26 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
+import java.net.ProtocolException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import com.google.gson.Gson;
+import com.google.gson.stream.MalformedJsonException;
 
 /**
  * Classe che rappresenta il server del gioco Wordle
@@ -35,16 +42,41 @@ public class WordleServer implements Runnable {
 	private Vocabulary vocabulary;
 	private long wordLifeTime;
 
-	private boolean shutdown = false;
+	private volatile boolean shutdown = false;
 
 	private ArrayList<Session> activeSession;
+	private WordEpoch wordEpoch;
 
 	private InetSocketAddress multicastGroup;
 	private MulticastSocket multicastSocket;
+	private ShareDispatcher shareDispatcher;
+	private ShareFanout shareFanout;
+	private String shareTransport;
 
 	private ExecutorService threadPool = null;
+	private String sessionMode;
+	private String backupFormat;
+
+	private Selector selector;
+	private ScheduledExecutorService wordTimer;
+	private final AtomicBoolean wordChangeDue = new AtomicBoolean(false); // impostato dal timer, la parola viene cambiata dal thread del Selector
+	private WriteAheadLog writeAheadLog;
+	private BackupWorker backupWorker;
+	private final ConcurrentLinkedQueue<SocketChannel> durableRegistrations = new ConcurrentLinkedQueue<>(); // registrazioni persistenti da confermare
 
 	private static final String BACKUP_FILE_NAME = "dataBackup.json";
+	private static final long LOG_COMPACTION_SIZE = 4 * 1024 * 1024; // dimensione del log oltre la quale viene effettuato il backup
+	private static final long LOG_COMPACTION_PERIOD = 60000;
+	private static final long WORD_CHANGE_RETRY_DELAY = 1000; // attesa prima di riprovare un cambio di parola fallito
+
+	private static final String SESSION_MODE_THREAD = "thread";
+	private static final String SESSION_MODE_VIRTUAL = "virtual";
+	private static final String SESSION_MODE_REACTOR = "reactor";
+
+	private static final String SHARE_TRANSPORT_MULTICAST = "multicast";
+	private static final String SHARE_TRANSPORT_TCP = "tcp";
+	private static final String SHARE_TRANSPORT_BOTH = "both";
+
 
 	/**
 	 * Implementazione del metodo run() di Runnable
@@ -53,7 +85,6 @@ public class WordleServer implements Runnable {
 		configureServer("configServer.txt", "dataBackup.json");
 		
 		ServerSocketChannel socket = null;
-		Selector selector = null;
 		
 		try { // apertura del socket e registrazione al selector
 			socket = ServerSocketChannel.open();
@@ -71,21 +102,37 @@ public class WordleServer implements Runnable {
 
 		System.out.printf(ServerOutputMessage.ServerListening, port);
 		
+		if (data.isTimeToChangeWord()) { // la parola salvata nel backup è già scaduta
+			changeWord();
+			backupWorker.requestBackup();
+		}
+
+		scheduleWordChange();
+		wordTimer.scheduleWithFixedDelay(() -> compactLog(), LOG_COMPACTION_PERIOD, LOG_COMPACTION_PERIOD, TimeUnit.MILLISECONDS);
+		long notifiedEpoch = wordEpoch.current();
+
 		// accettazione di nuove connessioni e gestione delle richieste
-		while (!shutdown || !threadPool.isTerminated()) { 
+		while (!shutdown) { 
 			int readyKey = 0;
 			
-			try { readyKey = selector.selectNow(); } 
+			// il Selector resta bloccato senza timeout: il timer lo risveglia quando la parola deve essere cambiata,
+			// così il ciclo non accede al monitor di WordleData, che il backup tiene occupato durante la copia dei dati
+			try { readyKey = selector.select(); } 
 			catch(IOException e) { e.printStackTrace(); }
 
-			if (data.isTimeToChangeWord()) {
-				changeWord();
-				data.doBackup(BACKUP_FILE_NAME);
+			if (wordChangeDue.getAndSet(false)) {
+				rotateWord();
 			}
 
-			if (shutdown) {
-				threadPool.shutdownNow();
-				changeWord();
+			if (wordEpoch.current() != notifiedEpoch) {
+				notifiedEpoch = wordEpoch.current();
+				updateAllSession();
+			}
+
+			confirmRegistrations(buffer);
+
+			if (shareFanout != null && shareFanout.takePendingDelivery()) {
+				deliverShares();
 			}
 
 			if (readyKey == 0) {
@@ -99,49 +146,41 @@ public class WordleServer implements Runnable {
 
 				if (key.isAcceptable()) {
 					acceptNewConnection(socket, selector);
+				} else if (key.attachment() instanceof Session) {
+					handleSessionEvent(key);
 				} else if (key.isReadable()) {
-					SocketChannel client = (SocketChannel) key.channel();
-					
-					buffer.clear();
-					
-					try { client.read(buffer); }
-					catch (IOException e) { e.printStackTrace(); }
-
-					buffer.flip();
-					
-					int operation = buffer.getInt();
-
-					switch(operation) {
-						case ClientRequest.REGISTER:
-						handleRegistration(client, buffer);
-						data.doBackup(BACKUP_FILE_NAME);
-						break;
-
-						case ClientRequest.LOGIN:
-						try { 
-							handleLogin(key, client, buffer); 
-						}
-						catch(IOException e) {e.printStackTrace();}
-						break;
-					}
-					key.cancel();
+					handleAuthentication(key, buffer);
 				}
 				selectedKey.remove();
 			}
 		}
 		
+		wordTimer.shutdownNow();
+		threadPool.shutdownNow();
+
+		try { threadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS); }
+		catch (InterruptedException e) { System.out.println(ServerOutputMessage.InterrputedExceptionMessage); }
+
+		for (Session session : activeSession) {
+			if (!session.isClosed()) session.close();
+		}
+		
 		try {
 			socket.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		
+		shareDispatcher.close();
+		backupWorker.close();
 		data.doBackup(BACKUP_FILE_NAME);
+		writeAheadLog.close();
 		System.out.println(ServerOutputMessage.TerminationMessage);
 	}
 
 	/**
 	 * Metodo che accetta una nuova connessione, crea un nuovo SocketChannel per il client e lo registra al Selector
+	 * insieme al FrameCodec che accumulerà i byte ricevuti
 	 * @param socket è il ServerSocketChannel che ha ricevuto la richiesta di connessione
 	 * @param selector è il Selector a cui verrà aggiunto il SocketChannel del client
 	 */
@@ -151,61 +190,156 @@ public class WordleServer implements Runnable {
 			System.out.println("new Connection established");
 
 			client.configureBlocking(false);
-			client.register(selector, SelectionKey.OP_READ);
+			client.register(selector, SelectionKey.OP_READ, new FrameCodec(FrameCodec.MAX_AUTH_FRAME_LENGTH));
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Metodo che gestisce le richieste di registrazione e login di una connessione non ancora autenticata.
+	 * Finché la richiesta non è stata ricevuta completamente i byte restano nel FrameCodec associato alla connessione,
+	 * una volta gestita la richiesta la connessione viene chiusa, a meno che non sia stata affidata a una sessione
+	 * @param key SelectionKey della connessione
+	 * @param buffer ByteBuffer utilizzato per inviare la risposta
+	 */
+	private void handleAuthentication(SelectionKey key, ByteBuffer buffer) {
+		SocketChannel client = (SocketChannel) key.channel();
+		FrameCodec codec = (FrameCodec) key.attachment();
+
+		try {
+			if (codec.read(client) != -1) {
+				ByteBuffer frame = codec.nextFrame();
+
+				if (frame == null) { // la richiesta non è ancora arrivata completamente
+					return;
+				}
+
+				switch(frame.getInt()) {
+					case ClientRequest.REGISTER:
+					handleRegistration(key, client, codec, frame, buffer);
+					break;
+
+					case ClientRequest.LOGIN:
+					handleLogin(key, client, codec, frame, buffer); 
+					break;
+				}
+			}
+		} catch (BufferUnderflowException | IOException e) {
+			System.out.println(ServerOutputMessage.ConnectionError);
+
+			if (key.attachment() instanceof Session) {
+				((Session) key.attachment()).close();
+			}
+		} catch (RuntimeException e) { // una richiesta non valida chiude solo la sua connessione, non il thread del Selector
+			System.out.println(ServerOutputMessage.RequestErrorMessage);
+
+			if (key.attachment() instanceof Session) {
+				((Session) key.attachment()).close();
+			}
+		}
+
+		if (key.attachment() instanceof FrameCodec) {
+			codec.release();
+			key.cancel();
+
+			try { client.close(); }
+			catch (IOException e) { e.printStackTrace(); }
+		}
+	}
+
 	/**
 	 * Metodo che gestisce la registrazione di un nuovo utente, controlla che il nome utente non sia già
-	 * presente e che la password abbia una lunghezza maggiore di 1, in caso affermativo invia un codice di Successo al client, e aggiunge l'oggetto 
-	 * User alla lista degli utenti, altrimenti invia un codice di Fallimento
+	 * presente e che la password abbia una lunghezza maggiore di 1, in caso affermativo aggiunge l'oggetto User alla lista degli utenti,
+	 * altrimenti invia un codice di Fallimento. Il codice di Successo viene inviato da confirmRegistrations() quando il nuovo utente
+	 * è stato reso persistente dal log: nel frattempo la connessione non viene più letta e il Selector non attende il disco
+	 * @param key è la SelectionKey del client che ha richiesto la registrazione
 	 * @param client è il SocketChannel del client che ha richiesto la registrazione
-	 * @param buffer è il ByteBuffer che contiene i dati inviati dal client
+	 * @param codec è il FrameCodec della connessione
+	 * @param frame è il ByteBuffer che contiene i dati inviati dal client
+	 * @param buffer è il ByteBuffer utilizzato per inviare la risposta
+	 * @throws ProtocolException se la richiesta non è valida
 	 */
-	private void handleRegistration(SocketChannel client, ByteBuffer buffer) {
-		String clientUsername = getNextString(buffer, buffer.getInt());
-		String clientPassword = getNextString(buffer, buffer.getInt());
-
-		int result = 0;
+	private void handleRegistration(SelectionKey key, SocketChannel client, FrameCodec codec, ByteBuffer frame, ByteBuffer buffer) throws ProtocolException {
+		String clientUsername = getNextString(frame, frame.getInt());
+		String clientPassword = getNextString(frame, frame.getInt());
 
-		if ( (!data.usernameAlreadyPresent(clientUsername)) && clientPassword.length() > 1 ) {
-			data.newUser(clientUsername, clientPassword, 0, false);
-			result = ServerResponse.SUCCESS;
-		} else {
-			result = ServerResponse.FAILURE;
+		if (clientPassword.length() > 1 && data.newUser(clientUsername, clientPassword, 0, false, () -> registrationDurable(client))) {
+			key.attach(null);
+			key.cancel();
+			codec.release();
+			return;
 		}
 
-		try { sendCode(result, buffer, client); }
+		try { sendCode(ServerResponse.FAILURE, buffer, client); }
 		catch (IOException e) {System.out.println(ServerOutputMessage.ConnectionError);}
 	}
 
+	/**
+	 * Metodo eseguito dal thread del log quando una registrazione è stata resa persistente:
+	 * accoda la connessione e risveglia il Selector, che invierà la conferma
+	 * @param client è il SocketChannel del client che ha richiesto la registrazione
+	 */
+	private void registrationDurable(SocketChannel client) {
+		durableRegistrations.add(client);
+		selector.wakeup();
+	}
+
+	/**
+	 * Metodo eseguito dal thread del Selector che invia il codice di Successo alle registrazioni rese persistenti e chiude le loro connessioni
+	 * @param buffer è il ByteBuffer utilizzato per inviare la risposta
+	 */
+	private void confirmRegistrations(ByteBuffer buffer) {
+		SocketChannel client;
+
+		while ((client = durableRegistrations.poll()) != null) {
+			try { sendCode(ServerResponse.SUCCESS, buffer, client); }
+			catch (IOException e) { System.out.println(ServerOutputMessage.ConnectionError); }
+
+			try { client.close(); }
+			catch (IOException e) { e.printStackTrace(); }
+		}
+	}
+
 	/**
 	 * Metodo che gestisce il login di un utente, controlla che il nome utente sia presente e che la password sia corretta, 
-	 * in caso affermativo invia un codice di Successo al client e fa partire il thread per la gestione della sessione, altrimenti invia un codice di Fallimento
+	 * in caso affermativo invia un codice di Successo al client e fa partire il thread per la gestione della sessione (oppure, in modalità reactor, 
+	 * lascia la connessione registrata al Selector associandole la sessione), altrimenti invia un codice di Fallimento
 	 * @param key è la SelectionKey del client che ha richiesto il login
 	 * @param client è il SocketChannel del client che ha richiesto il login
-	 * @param buffer è il ByteBuffer che contiene i dati inviati dal client
+	 * @param codec è il FrameCodec della connessione, viene affidato alla sessione
+	 * @param frame è il ByteBuffer che contiene i dati inviati dal client
+	 * @param buffer è il ByteBuffer utilizzato per inviare la risposta
 	 * @throws IOException
 	 */
-	private void handleLogin(SelectionKey key, SocketChannel client, ByteBuffer buffer) throws IOException {
-		String clientUsername = getNextString(buffer, buffer.getInt());
-		String clientPassword = getNextString(buffer, buffer.getInt());
+	private void handleLogin(SelectionKey key, SocketChannel client, FrameCodec codec, ByteBuffer frame, ByteBuffer buffer) throws IOException {
+		String clientUsername = getNextString(frame, frame.getInt());
+		String clientPassword = getNextString(frame, frame.getInt());
+
+		User user = data.getUser(clientUsername);
 
-		if (data.passwordVerification(clientUsername, clientPassword)) {
+		if (user != null && user.checkPassword(clientPassword)) {
 			buffer.clear();
+			int frameStart = FrameCodec.beginFrame(buffer);
 			buffer.putInt(ServerResponse.SUCCESS);
-			buffer.putInt(data.getUser(clientUsername).getAttempt());
+			buffer.putInt(user.getAttempt());
+			FrameCodec.endFrame(buffer, frameStart);
 			buffer.flip();
 
 			client.write(buffer);
-			
-			key.cancel();
-			key.channel().configureBlocking(true);
 
-			Session session = new Session((SocketChannel) key.channel(), data, data.getUser(clientUsername), multicastSocket, multicastGroup);
-			threadPool.execute(session);
+			codec.setMaxFrameLength(FrameCodec.MAX_FRAME_LENGTH); // dopo il login sono ammesse anche le richieste più grandi
+			Session session = new Session((SocketChannel) key.channel(), codec, data, user, wordEpoch, shareDispatcher, shareFanout);
+			
+			if (sessionMode.equals(SESSION_MODE_REACTOR)) {
+				session.bind(key);
+			} else {
+				key.attach(null);
+				key.cancel();
+				key.channel().configureBlocking(true);
+
+				threadPool.execute(session);
+			}
 			
 			activeSession.add(session);
 			
@@ -215,7 +349,34 @@ public class WordleServer implements Runnable {
 	}
 
 	/**
-	 * Metodo che invia un codice di risposta al client. Il buffer viene prima pulito, poi viene inserito il codice e infine viene inviato al client
+	 * Metodo che gestisce un evento del Selector relativo a una sessione in modalità reactor.
+	 * Se la connessione viene chiusa la sessione viene rimossa dalla lista delle sessioni attive
+	 * @param key SelectionKey a cui è associata la sessione
+	 */
+	private void handleSessionEvent(SelectionKey key) {
+		Session session = (Session) key.attachment();
+
+		try {
+			if (key.isWritable()) {
+				session.handleWrite();
+			} else if (key.isReadable()) {
+				session.handleRead();
+			}
+		} catch (BufferUnderflowException | IOException e) {
+			System.out.println(ServerOutputMessage.ConnectionError);
+			session.close();
+		} catch (RuntimeException e) { // una richiesta non valida chiude solo la sua sessione, non il thread del Selector
+			System.out.println(ServerOutputMessage.RequestErrorMessage);
+			session.close();
+		}
+
+		if (session.isClosed()) {
+			activeSession.remove(session);
+		}
+	}
+
+	/**
+	 * Metodo che invia un codice di risposta al client. Il buffer viene prima pulito, poi viene inserito il frame contenente il codice e infine viene inviato al client
 	 * @param code è il codice da inviare
 	 * @param buffer è il ByteBuffer che verrà utilizzato per inviare il codice
 	 * @param connection è il SocketChannel del client a cui verrà inviato il codice
@@ -223,7 +384,9 @@ public class WordleServer implements Runnable {
 	 */
 	private static void sendCode(int code, ByteBuffer buffer, SocketChannel connection) throws IOException {
 		buffer.clear();
+		int frameStart = FrameCodec.beginFrame(buffer);
 		buffer.putInt(code);
+		FrameCodec.endFrame(buffer, frameStart);
 		buffer.flip();
 
 		connection.write(buffer);
@@ -234,8 +397,13 @@ public class WordleServer implements Runnable {
 	 * @param buffer è il ByteBuffer da cui verrà estratta la stringa
 	 * @param stringLength è la lunghezza della stringa
 	 * @return la stringa contenuta nel ByteBuffer
+	 * @throws ProtocolException se la lunghezza dichiarata è negativa o supera i byte rimasti nel frame
 	 */
-	private String getNextString(ByteBuffer buffer, int stringLength) {
+	private String getNextString(ByteBuffer buffer, int stringLength) throws ProtocolException {
+		if (stringLength < 0 || stringLength > buffer.remaining()) {
+			throw new ProtocolException("Lunghezza della stringa non valida: " + stringLength);
+		}
+
 		byte[] byteArray = new byte[stringLength];
 		buffer.get(byteArray);
 
@@ -243,21 +411,79 @@ public class WordleServer implements Runnable {
 	}
 
 	/**
-	 * Metodo che cambia la parola segreta scegliendone una nuova a caso e notificando l'avvenuta modifica a tutte le sessioni
+	 * Metodo che cambia la parola segreta scegliendone una nuova a caso e facendo avanzare l'epoca della parola
 	 */
 	private void changeWord() {
 		data.setSecreteWord(vocabulary.randomWord(), this.wordLifeTime);
-		updateAllSession();
+		wordEpoch.advance();
+	}
+
+	/**
+	 * Metodo che programma il prossimo cambio della parola segreta nel momento indicato da WordleData.
+	 * Se quel momento è già passato (il cambio precedente non è riuscito) il cambio viene riprovato dopo WORD_CHANGE_RETRY_DELAY
+	 */
+	private void scheduleWordChange() {
+		long delay = data.getNextWordChangeTime() - System.currentTimeMillis();
+
+		if (delay <= 0) delay = WORD_CHANGE_RETRY_DELAY;
+
+		wordTimer.schedule(() -> {
+			wordChangeDue.set(true);
+			selector.wakeup();
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Metodo eseguito dal thread del Selector allo scadere della parola segreta, dopo il risveglio da parte del timer:
+	 * cambia la parola, richiede il backup e programma il cambio successivo. Le sessioni gestite dal Selector giocano
+	 * sullo stesso thread, quindi nessun tentativo viene confrontato con la parola precedente mentre gli utenti vengono azzerati.
+	 * Il cambio successivo viene programmato anche se questo non è riuscito, altrimenti la parola non cambierebbe più
+	 */
+	private void rotateWord() {
+		try {
+			changeWord();
+			backupWorker.requestBackup();
+		} catch (RuntimeException e) {
+			System.out.println(ServerOutputMessage.WordChangeErrorMessage);
+			e.printStackTrace();
+		} finally {
+			scheduleWordChange();
+		}
 	}
 	
 	/**
-	 * Metodo che aggiorna tutte le sessioni comunicando 
-	 * l'avvenuta modifica della parola segreta
+	 * Metodo eseguito periodicamente dal timer che richiede il backup quando il log delle modifiche
+	 * ha superato LOG_COMPACTION_SIZE, in modo da limitare il tempo necessario a riapplicarlo all'avvio
+	 */
+	private void compactLog() {
+		if (writeAheadLog.getSegmentSize() > LOG_COMPACTION_SIZE) {
+			backupWorker.requestBackup();
+		}
+	}
+
+	/**
+	 * Metodo eseguito dal thread del Selector che aggiorna tutte le sessioni comunicando 
+	 * l'avvenuta modifica della parola segreta. L'epoca è già stata fatta avanzare da changeWord(), 
+	 * risvegliando insieme tutte le sessioni in attesa, qui vengono notificate le sessioni gestite dal Selector
 	 */
 	private void updateAllSession() {
 		for (Session session : activeSession) {
 			session.wordIsChanged();
 		}
+
+		activeSession.removeIf((session) -> session.isClosed());
+	}
+
+	/**
+	 * Metodo eseguito dal thread del Selector dopo che ShareFanout ha accodato nuovi messaggi condivisi:
+	 * le sessioni gestite dal Selector scrivono i frame ricevuti senza attendere la richiesta successiva
+	 */
+	private void deliverShares() {
+		for (Session session : activeSession) {
+			session.deliverShares();
+		}
+
+		activeSession.removeIf((session) -> session.isClosed());
 	}
 
 	/**
@@ -265,12 +491,52 @@ public class WordleServer implements Runnable {
 	 */
 	public void shutdown() {
 		shutdown = true;
+
+		if (selector != null) selector.wakeup();
 	}
 	
+	/**
+	 * Metodo che crea un ExecutorService che esegue ogni sessione in un nuovo virtual thread.
+	 * Le read e write bloccanti della sessione sospendono il virtual thread senza occupare un thread di piattaforma.
+	 * Il metodo viene cercato tramite reflection perché è disponibile solo da Java 21, 
+	 * se la JVM non lo supporta viene utilizzato il ThreadPool classico
+	 * @return ExecutorService per l'esecuzione delle sessioni
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			System.out.println(ServerOutputMessage.VirtualThreadUnavailableMessage);
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Metodo che sceglie il file di backup da caricare: quello nel formato configurato, oppure quello nell'altro formato
+	 * se il primo è vuoto o non esiste, ad esempio perché un backup nell'altro formato lo ha rinominato con l'estensione ".old".
+	 * Se sono entrambi vuoti restituisce il file di backup JSON
+	 * @param backupFileName contiene il nome del file di backup JSON
+	 * @return file di backup da caricare, il suo formato viene riconosciuto dal contenuto
+	 */
+	private File selectBackupFile(String backupFileName) {
+		File jsonBackupFile = new File(backupFileName);
+		File binaryBackupFile = BinaryBackup.fileFor(backupFileName);
+
+		File configuredFile = backupFormat.equals(WordleData.BACKUP_FORMAT_BINARY) ? binaryBackupFile : jsonBackupFile;
+		File otherFile = configuredFile == binaryBackupFile ? jsonBackupFile : binaryBackupFile;
+
+		if (configuredFile.length() > 0) return configuredFile;
+		if (otherFile.length() > 0) return otherFile;
+
+		return jsonBackupFile;
+	}
+
 	/**
 	 * Metodo che configura il server leggendo i dati dal file di configurazione e dal file di backup.
-	 * Inizializza il MulticastSocket per l'invio delle notifiche agli utenti.
-	 * Inizializza il ThreadPool per la gestione delle sessioni.
+	 * Inizializza il MulticastSocket e/o ShareFanout per l'invio delle notifiche agli utenti, in base al trasporto configurato.
+	 * Inizializza il ThreadPool per la gestione delle sessioni (un virtual thread per sessione in modalità virtual), non utilizzato in modalità reactor.
+	 * Inizializza il timer che si occupa del cambio della parola segreta.
+	 * Riapplica ai dati caricati le modifiche registrate nel log dopo l'ultimo backup.
 	 * @param configurationFileName contiene il nome del file di configurazione
 	 * @param backupFileName contiene il nome del file di backup
 	 */
@@ -287,15 +553,12 @@ public class WordleServer implements Runnable {
 			vocabularyFileName = bufferedReader.readLine();
 			wordLifeTime = Long.parseLong(bufferedReader.readLine());
 			multicastAddress = bufferedReader.readLine();
-	
+			sessionMode = bufferedReader.readLine();
+			backupFormat = bufferedReader.readLine();
+			shareTransport = bufferedReader.readLine();
+
 			bufferedReader.close();
 			fileReader.close();
-			
-			fileReader = new FileReader(new File(backupFileName));
-			Gson gson = new Gson();
-			data = gson.fromJson(fileReader, WordleData.class);
-			fileReader.close();
-		
 		} catch (FileNotFoundException e) {
 			System.out.println(ServerOutputMessage.configErrorMessage);
 			System.exit(1);
@@ -312,27 +575,102 @@ public class WordleServer implements Runnable {
 			System.out.println(ServerOutputMessage.WordLifeTimeErrorMessage);
 			System.exit(1);
 		}
+
+		if (sessionMode == null) { // la modalità di gestione delle sessioni è opzionale
+			sessionMode = SESSION_MODE_THREAD;
+		}
+
+		if (!sessionMode.equals(SESSION_MODE_THREAD) && !sessionMode.equals(SESSION_MODE_VIRTUAL) && !sessionMode.equals(SESSION_MODE_REACTOR)) {
+			System.out.println(ServerOutputMessage.SessionModeErrorMessage);
+			System.exit(1);
+		}
+		
+		if (backupFormat == null) { // il formato del backup è opzionale
+			backupFormat = WordleData.BACKUP_FORMAT_JSON;
+		}
+
+		if (!backupFormat.equals(WordleData.BACKUP_FORMAT_JSON) && !backupFormat.equals(WordleData.BACKUP_FORMAT_COMPACT) && !backupFormat.equals(WordleData.BACKUP_FORMAT_BINARY)) {
+			System.out.println(ServerOutputMessage.BackupFormatErrorMessage);
+			System.exit(1);
+		}
 		
+		if (shareTransport == null) { // il trasporto delle condivisioni è opzionale
+			shareTransport = SHARE_TRANSPORT_MULTICAST;
+		}
+
+		if (!shareTransport.equals(SHARE_TRANSPORT_MULTICAST) && !shareTransport.equals(SHARE_TRANSPORT_TCP) && !shareTransport.equals(SHARE_TRANSPORT_BOTH)) {
+			System.out.println(ServerOutputMessage.ShareTransportErrorMessage);
+			System.exit(1);
+		}
+
 		vocabulary = new Vocabulary(vocabularyFileName);
-		threadPool = Executors.newCachedThreadPool();
+		WordTable.setVocabulary(vocabulary);
+		threadPool = sessionMode.equals(SESSION_MODE_VIRTUAL) ? newVirtualThreadExecutor() : Executors.newCachedThreadPool();
 		activeSession = new ArrayList<>();
-		
+		wordEpoch = new WordEpoch();
+		wordTimer = Executors.newSingleThreadScheduledExecutor();
+
+		File backupFile = selectBackupFile(backupFileName);
+
+		try {
+			if (backupFile.length() > 0 && BinaryBackup.isBinaryBackup(backupFile)) {
+				data = BinaryBackup.load(backupFile, vocabulary);
+			} else {
+				data = JsonBackup.load(backupFile);
+			}
+		} catch (NoSuchFileException e) {
+			System.out.println(ServerOutputMessage.configErrorMessage);
+			System.exit(1);
+		} catch (IllegalStateException | NumberFormatException | MalformedJsonException e) {
+			System.out.println(ServerOutputMessage.jsonErrorMessage);
+			System.exit(1);
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+
 		if (data == null) { // Il file dataBackup.json è vuoto
 			data = new WordleData();
 		}
 
-		try {
-			InetAddress multicastInetAddress = InetAddress.getByName(multicastAddress);
-			multicastGroup = new InetSocketAddress(multicastInetAddress, port);
-			NetworkInterface networkInterface = NetworkInterface.getByName("lo0");
-			
-			multicastSocket = new MulticastSocket(port);
-	
-			multicastSocket.joinGroup(new InetSocketAddress(multicastInetAddress, 0), networkInterface);
-		} catch (UnknownHostException | SocketException e) {
-			System.out.println(ServerOutputMessage.MulticastSocketErrorMessage);
+		data.setBackupFormat(backupFormat, vocabulary);
+
+		try { // le modifiche successive all'ultimo backup vengono riapplicate dal log
+			writeAheadLog = new WriteAheadLog(backupFileName);
+			writeAheadLog.recover(data, data.getWalGeneration());
+			data.setWriteAheadLog(writeAheadLog);
+			backupWorker = new BackupWorker(data, backupFileName);
 		} catch (IOException e) {
-			e.printStackTrace();
+			System.out.println(ServerOutputMessage.LogRecoveryErrorMessage);
+			System.exit(1);
 		}
+
+		// la classifica e i risultati per parola vengono costruiti prima di accettare connessioni, non alla prima partita conclusa
+		data.getLeaderboard();
+		data.getWordResults();
+
+		if (!shareTransport.equals(SHARE_TRANSPORT_TCP)) {
+			try {
+				InetAddress multicastInetAddress = InetAddress.getByName(multicastAddress);
+				multicastGroup = new InetSocketAddress(multicastInetAddress, port);
+				NetworkInterface networkInterface = ShareDispatcher.multicastInterface();
+				
+				multicastSocket = new MulticastSocket(port);
+				multicastSocket.setNetworkInterface(networkInterface);
+		
+				multicastSocket.joinGroup(new InetSocketAddress(multicastInetAddress, 0), networkInterface);
+			} catch (UnknownHostException | SocketException e) {
+				System.out.println(ServerOutputMessage.MulticastSocketErrorMessage);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (!shareTransport.equals(SHARE_TRANSPORT_MULTICAST)) {
+			// solo le sessioni gestite dal Selector hanno bisogno di essere risvegliate, le altre ricevono le condivisioni con la risposta successiva
+			shareFanout = new ShareFanout(sessionMode.equals(SESSION_MODE_REACTOR) ? () -> selector.wakeup() : () -> {});
+		}
+
+		shareDispatcher = new ShareDispatcher(multicastSocket, multicastGroup, ShareMessage.fingerprint(vocabulary), shareFanout);
 	}
 }
\ No newline at end of file
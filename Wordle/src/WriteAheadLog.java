@@ -0,0 +1,599 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Classe che rappresenta il log delle modifiche ai dati del gioco (write-ahead log).
+ * Ogni modifica viene accodata come record binario: lunghezza (int), CRC32 del contenuto (int), tipo (byte) e dati.
+ * I record accodati vengono scritti su disco e resi persistenti con un unico fsync da un thread dedicato,
+ * così più modifiche arrivate durante lo stesso fsync vengono rese persistenti insieme (group commit).
+ * Il log è diviso in segmenti "nomeBackup.wal.generazione": a ogni backup si passa a un nuovo segmento
+ * e quelli precedenti, già contenuti nel backup, vengono eliminati.
+ * Se la scrittura non riesce, il thread del log riprova a scrivere gli stessi record ogni WRITE_RETRY_DELAY millisecondi,
+ * dopo aver eliminato dal segmento la parte scritta solo in parte; finché non ci riesce, sync() segnala l'errore.
+ * I record in attesa di scrittura occupano al massimo MAX_PENDING_BYTES: oltre questo limite i nuovi record vengono rifiutati
+ *
+ * @author Lorenzo Deriu
+ */
+public class WriteAheadLog {
+	public static final byte NEW_USER = 1;
+	public static final byte GAME_RECORD = 2;
+	public static final byte NOTIFICATION = 3;
+	public static final byte WORD_CHANGE = 4;
+
+	public static final long REJECTED = -1; // numero di sequenza di un record rifiutato perché il log è pieno
+
+	private static final int HEADER_SIZE = 9;
+	private static final int MAX_RECORD_LENGTH = 1 << 20;
+	private static final long WRITE_RETRY_DELAY = 1000;
+	private static final int MAX_PENDING_BYTES = 8 * 1024 * 1024; // dimensione massima dei record in attesa di scrittura
+
+	private final String backupFileName;
+
+	private FileChannel segment;
+	private long generation;
+	private long segmentSize;
+
+	private ByteBuffer pending; // record accodati e non ancora scritti
+	private ByteBuffer writing; // record in fase di scrittura da parte del thread del log
+	private long appendedSequence;
+	private long durableSequence;
+	private Boolean closed;
+	private IOException failure; // errore dell'ultima scrittura, null dopo una scrittura riuscita
+	private Boolean full; // true se un record è stato rifiutato dopo l'ultima scrittura riuscita
+	private final ArrayDeque<DurableCallback> callbacks; // operazioni da eseguire quando un record è persistente
+
+	private final ReentrantLock lock;
+	private final Condition recordAppended;
+	private final Condition recordDurable;
+	private final CRC32 crc;
+
+	private Thread flusher;
+
+	/**
+	 * Classe che rappresenta un'operazione in attesa che un record sia reso persistente
+	 */
+	private static class DurableCallback {
+		private final long sequence;
+		private final Runnable callback;
+
+		private DurableCallback(long sequence, Runnable callback) {
+			this.sequence = sequence;
+			this.callback = callback;
+		}
+	}
+
+	/**
+	 * Costruttore della classe
+	 * @param backupFileName nome del file di backup a cui appartiene il log
+	 */
+	public WriteAheadLog(String backupFileName) {
+		this.backupFileName = backupFileName;
+
+		this.pending = ByteBuffer.allocate(8192);
+		this.writing = ByteBuffer.allocate(8192);
+		this.appendedSequence = 0;
+		this.durableSequence = 0;
+		this.closed = false;
+		this.full = false;
+		this.callbacks = new ArrayDeque<>();
+
+		this.lock = new ReentrantLock();
+		this.recordAppended = lock.newCondition();
+		this.recordDurable = lock.newCondition();
+		this.crc = new CRC32();
+	}
+
+	/**
+	 * Metodo che riapplica ai dati tutti i record dei segmenti successivi al backup, a partire dalla generazione indicata,
+	 * e apre un nuovo segmento per le modifiche successive. Un record incompleto o danneggiato, ad esempio scritto
+	 * solo in parte prima di un crash, termina la lettura del segmento e viene eliminato solo se il segmento è l'ultimo:
+	 * se esistono segmenti successivi i loro record dipendono da quelli persi, quindi non vengono riapplicati e il ripristino non riesce
+	 * @param data dati del gioco caricati dal backup
+	 * @param firstGeneration generazione del primo segmento non contenuto nel backup
+	 * @throws IOException se la lettura non riesce o un segmento diverso dall'ultimo è danneggiato
+	 */
+	public void recover(WordleData data, long firstGeneration) throws IOException {
+		long generation = firstGeneration;
+
+		while (segmentFile(generation).exists()) {
+			Boolean last = !segmentFile(generation + 1).exists();
+
+			if (!replaySegment(segmentFile(generation), data, last)) {
+				System.out.printf(ServerOutputMessage.LogCorruptedMessage, segmentFile(generation).getName());
+				throw new IOException(segmentFile(generation).getName());
+			}
+
+			generation++;
+		}
+
+		openSegment(generation);
+
+		flusher = new Thread(() -> flushLoop(), "wal-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Metodo che accoda un nuovo utente
+	 * @param username username dell'utente
+	 * @param password password dell'utente
+	 * @return numero di sequenza del record, da passare a sync(), oppure REJECTED se il log è pieno
+	 */
+	public long appendNewUser(String username, String password) {
+		byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+		byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+
+		lock.lock();
+		try {
+			int recordStart = beginRecord(NEW_USER, 8 + usernameBytes.length + passwordBytes.length);
+			if (recordStart < 0) return REJECTED;
+
+			putBytes(usernameBytes);
+			putBytes(passwordBytes);
+
+			return endRecord(recordStart);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che accoda una partita conclusa
+	 * @param username username dell'utente
+	 * @param word parola che l'utente ha cercato di indovinare
+	 * @param attemptsCount numero di tentativi
+	 * @param guessed se la parola è stata indovinata
+	 * @param timestamp momento di fine partita in millisecondi
+	 * @return numero di sequenza del record, da passare a sync(), oppure REJECTED se il log è pieno
+	 */
+	public long appendGameRecord(String username, String word, int attemptsCount, Boolean guessed, long timestamp) {
+		byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+		byte[] wordBytes = word.getBytes(StandardCharsets.UTF_8);
+
+		lock.lock();
+		try {
+			int recordStart = beginRecord(GAME_RECORD, 21 + usernameBytes.length + wordBytes.length);
+			if (recordStart < 0) return REJECTED;
+
+			putBytes(usernameBytes);
+			putBytes(wordBytes);
+			pending.putInt(attemptsCount);
+			pending.put((byte) (guessed ? 1 : 0));
+			pending.putLong(timestamp);
+
+			return endRecord(recordStart);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che accoda una notifica inviata agli utenti
+	 * @param notification testo della notifica
+	 * @return numero di sequenza del record, da passare a sync(), oppure REJECTED se il log è pieno
+	 */
+	public long appendNotification(String notification) {
+		byte[] notificationBytes = notification.getBytes(StandardCharsets.UTF_8);
+
+		lock.lock();
+		try {
+			int recordStart = beginRecord(NOTIFICATION, 4 + notificationBytes.length);
+			if (recordStart < 0) return REJECTED;
+
+			putBytes(notificationBytes);
+
+			return endRecord(recordStart);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che accoda il cambio della parola segreta
+	 * @param word nuova parola segreta
+	 * @param nextWordChangeTime momento del prossimo aggiornamento della parola segreta
+	 * @return numero di sequenza del record, da passare a sync(), oppure REJECTED se il log è pieno
+	 */
+	public long appendWordChange(String word, long nextWordChangeTime) {
+		byte[] wordBytes = word.getBytes(StandardCharsets.UTF_8);
+
+		lock.lock();
+		try {
+			int recordStart = beginRecord(WORD_CHANGE, 12 + wordBytes.length);
+			if (recordStart < 0) return REJECTED;
+
+			putBytes(wordBytes);
+			pending.putLong(nextWordChangeTime);
+
+			return endRecord(recordStart);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che attende che il record con il numero di sequenza indicato, e tutti quelli precedenti, siano stati resi persistenti
+	 * @param sequence numero di sequenza restituito da uno dei metodi append
+	 * @throws IOException se la scrittura del log non è riuscita
+	 */
+	public void sync(long sequence) throws IOException {
+		lock.lock();
+		try {
+			while (durableSequence < sequence && failure == null && !closed) {
+				recordDurable.awaitUninterruptibly();
+			}
+
+			if (durableSequence < sequence && failure != null) throw failure;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che registra un'operazione da eseguire, senza attendere, quando il record con il numero di sequenza indicato
+	 * sarà stato reso persistente. L'operazione viene eseguita dal thread del log, oppure subito se il record è già persistente
+	 * @param sequence numero di sequenza restituito da uno dei metodi append
+	 * @param callback operazione da eseguire, deve essere breve e non bloccarsi
+	 */
+	public void whenDurable(long sequence, Runnable callback) {
+		lock.lock();
+		try {
+			if (durableSequence < sequence) {
+				callbacks.add(new DurableCallback(sequence, callback));
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		callback.run();
+	}
+
+	/**
+	 * Metodo che passa a un nuovo segmento dopo aver reso persistenti tutti i record accodati.
+	 * Deve essere chiamato mentre nessuno può accodare nuovi record, cioè tenendo il monitor di WordleData
+	 * @return generazione del nuovo segmento, il primo da riapplicare dopo il backup che si sta per scrivere
+	 * @throws IOException
+	 */
+	public long nextSegment() throws IOException {
+		lock.lock();
+		try {
+			sync(appendedSequence);
+
+			segment.close();
+			openSegment(generation + 1);
+
+			return generation;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che elimina i segmenti precedenti alla generazione indicata, ormai contenuti nel backup
+	 * @param firstGeneration generazione del primo segmento da mantenere
+	 */
+	public void deleteSegmentsBefore(long firstGeneration) {
+		for (long generation = firstGeneration - 1; generation >= 0 && segmentFile(generation).delete(); generation--);
+	}
+
+	/**
+	 * Metodo che restituisce la dimensione in byte del segmento corrente
+	 * @return dimensione del segmento corrente
+	 */
+	public long getSegmentSize() {
+		lock.lock();
+		try {
+			return segmentSize + pending.position();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che rende persistenti i record accodati e chiude il log
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			try { sync(appendedSequence); }
+			catch (IOException e) { System.out.println(ServerOutputMessage.LogWriteErrorMessage); }
+
+			closed = true;
+			recordAppended.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			flusher.join();
+			segment.close();
+		} catch (InterruptedException | IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Metodo eseguito dal thread del log: scrive con un solo fsync tutti i record accodati fino a quel momento.
+	 * Se la scrittura non riesce viene riprovata finché il log non viene chiuso
+	 */
+	private void flushLoop() {
+		while (true) {
+			long sequence;
+
+			lock.lock();
+			try {
+				while (pending.position() == 0 && !closed) {
+					recordAppended.awaitUninterruptibly();
+				}
+
+				if (pending.position() == 0) return;
+
+				ByteBuffer records = pending;
+				pending = writing;
+				writing = records;
+				sequence = appendedSequence;
+			} finally {
+				lock.unlock();
+			}
+
+			writing.flip();
+			IOException error = writeRecords(false);
+
+			while (error != null && !reportFailure(error)) {
+				try { Thread.sleep(WRITE_RETRY_DELAY); }
+				catch (InterruptedException e) { break; }
+
+				writing.rewind();
+				error = writeRecords(true);
+			}
+
+			ArrayList<Runnable> completed = new ArrayList<>();
+
+			lock.lock();
+			try {
+				if (error == null) {
+					segmentSize += writing.limit();
+					durableSequence = sequence;
+					failure = null;
+					full = false;
+
+					callbacks.removeIf((pendingCallback) -> pendingCallback.sequence <= sequence && completed.add(pendingCallback.callback));
+				}
+
+				writing.clear();
+				recordDurable.signalAll();
+			} finally {
+				lock.unlock();
+			}
+
+			for (Runnable callback : completed) {
+				callback.run();
+			}
+		}
+	}
+
+	/**
+	 * Metodo che scrive sul segmento i record in fase di scrittura e li rende persistenti
+	 * @param retry true se è un nuovo tentativo: il segmento viene riaperto e riportato alla dimensione dell'ultima scrittura riuscita
+	 * @return errore della scrittura, null se è riuscita
+	 */
+	private IOException writeRecords(Boolean retry) {
+		try {
+			if (retry) {
+				try { segment.close(); }
+				catch (IOException e) {}
+
+				segment = FileChannel.open(segmentFile(generation).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				segment.truncate(segmentSize);
+				segment.position(segmentSize);
+			}
+
+			while (writing.hasRemaining()) {
+				segment.write(writing);
+			}
+			segment.force(false);
+
+			return null;
+		} catch (IOException e) {
+			return e;
+		}
+	}
+
+	/**
+	 * Metodo che segnala una scrittura non riuscita a chi è in attesa in sync()
+	 * @param error errore della scrittura
+	 * @return true se il log è stato chiuso e la scrittura non deve essere riprovata
+	 */
+	private Boolean reportFailure(IOException error) {
+		lock.lock();
+		try {
+			if (failure == null) System.out.println(ServerOutputMessage.LogWriteErrorMessage);
+
+			failure = error;
+			recordDurable.signalAll();
+
+			return closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che inizia un nuovo record nel buffer dei record accodati, da chiamare tenendo il lock.
+	 * Se il record farebbe superare MAX_PENDING_BYTES, ad esempio perché il disco non accetta scritture da tempo, non viene accodato
+	 * @param type tipo del record
+	 * @param contentLength lunghezza in byte dei dati del record
+	 * @return posizione di inizio del record, da passare a endRecord(), -1 se il log è pieno
+	 */
+	private int beginRecord(byte type, int contentLength) {
+		if (pending.position() + HEADER_SIZE + contentLength > MAX_PENDING_BYTES) {
+			if (!full) System.out.println(ServerOutputMessage.LogFullMessage);
+
+			full = true;
+			return -1;
+		}
+
+		if (pending.remaining() < HEADER_SIZE + contentLength) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_SIZE + contentLength));
+			pending.flip();
+			larger.put(pending);
+			pending = larger;
+		}
+
+		int recordStart = pending.position();
+		pending.putInt(contentLength + 1);
+		pending.putInt(0);
+		pending.put(type);
+
+		return recordStart;
+	}
+
+	/**
+	 * Metodo che chiude il record iniziato con beginRecord() calcolandone il CRC e risveglia il thread del log
+	 * @param recordStart posizione di inizio del record
+	 * @return numero di sequenza del record
+	 */
+	private long endRecord(int recordStart) {
+		crc.reset();
+		crc.update(pending.array(), recordStart + 8, pending.position() - recordStart - 8);
+		pending.putInt(recordStart + 4, (int) crc.getValue());
+
+		recordAppended.signal();
+		return ++appendedSequence;
+	}
+
+	/**
+	 * Metodo che accoda un array di byte preceduto dalla sua lunghezza
+	 * @param bytes byte da accodare
+	 */
+	private void putBytes(byte[] bytes) {
+		pending.putInt(bytes.length);
+		pending.put(bytes);
+	}
+
+	/**
+	 * Metodo che apre il segmento della generazione indicata, posizionandosi alla sua fine
+	 * @param generation generazione del segmento
+	 * @throws IOException
+	 */
+	private void openSegment(long generation) throws IOException {
+		this.generation = generation;
+		this.segment = FileChannel.open(segmentFile(generation).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		this.segmentSize = segment.size();
+
+		segment.position(segmentSize);
+	}
+
+	/**
+	 * Metodo che restituisce il file del segmento della generazione indicata
+	 * @param generation generazione del segmento
+	 * @return file del segmento
+	 */
+	private File segmentFile(long generation) {
+		return new File(backupFileName + ".wal." + generation);
+	}
+
+	/**
+	 * Metodo che riapplica ai dati i record di un segmento. Se il segmento è l'ultimo la parte che segue
+	 * l'ultimo record valido viene eliminata, altrimenti il file non viene modificato
+	 * @param file file del segmento
+	 * @param data dati del gioco
+	 * @param last true se il segmento è l'ultimo del log
+	 * @return true se il segmento è stato letto fino alla fine, oppure se è l'ultimo ed è stato troncato all'ultimo record valido
+	 * @throws IOException
+	 */
+	private Boolean replaySegment(File file, WordleData data, Boolean last) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+
+		while (content.hasRemaining() && channel.read(content) != -1);
+		content.flip();
+
+		long validLength = 0;
+
+		while (content.remaining() >= HEADER_SIZE) {
+			int recordStart = content.position();
+			int recordLength = content.getInt();
+			int recordCrc = content.getInt();
+
+			if (recordLength < 1 || recordLength > MAX_RECORD_LENGTH || recordLength > content.remaining()) break;
+
+			crc.reset();
+			crc.update(content.array(), content.position(), recordLength);
+			if ((int) crc.getValue() != recordCrc) break;
+
+			ByteBuffer record = content.slice(content.position(), recordLength);
+			content.position(content.position() + recordLength);
+
+			try {
+				applyRecord(record, data);
+			} catch (RuntimeException e) {
+				content.position(recordStart);
+				break;
+			}
+
+			validLength = content.position();
+		}
+
+		Boolean complete = validLength == channel.size();
+
+		if (!complete && last) { // elimina la coda scritta solo in parte prima dell'interruzione
+			System.out.println(ServerOutputMessage.LogTruncatedMessage);
+			channel.truncate(validLength);
+		}
+
+		channel.close();
+
+		return complete || last;
+	}
+
+	/**
+	 * Metodo che riapplica ai dati un singolo record
+	 * @param record contenuto del record, a partire dal tipo
+	 * @param data dati del gioco
+	 */
+	private static void applyRecord(ByteBuffer record, WordleData data) {
+		switch (record.get()) {
+			case NEW_USER:
+			data.restoreUser(getString(record), getString(record));
+			break;
+
+			case GAME_RECORD:
+			data.restoreGameRecord(getString(record), getString(record), record.getInt(), record.get() == 1, record.remaining() >= 8 ? record.getLong() : 0);
+			break;
+
+			case NOTIFICATION:
+			data.restoreNotification(getString(record));
+			break;
+
+			case WORD_CHANGE:
+			data.restoreSecreteWord(getString(record), record.getLong());
+			break;
+
+			default:
+			throw new IllegalStateException("Tipo di record sconosciuto");
+		}
+	}
+
+	/**
+	 * Metodo che legge una stringa preceduta dalla sua lunghezza
+	 * @param record buffer da cui leggere
+	 * @return stringa letta
+	 */
+	private static String getString(ByteBuffer record) {
+		byte[] bytes = new byte[record.getInt()];
+		record.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}